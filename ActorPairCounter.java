@@ -0,0 +1,144 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts how many movies every pair of actors appears in together. Actors are
+ * identified by their ids in the global SymbolTable, and a pair of ids (a, b)
+ * with a &lt; b is packed into the long key (a &lt;&lt; 32) | b of a primitive
+ * hash map. The movies are split into partitions which are counted in
+ * parallel and merged at the end.
+ */
+public class ActorPairCounter {
+
+  /**
+   * The number of movies below which a partition is counted on a single
+   * thread.
+   */
+  static final int PARTITION_SIZE = 1024;
+
+  private final SymbolTable actors = SymbolTable.global();
+  private final int[][] casts;
+
+  /**
+   * Map the cast of every movie to a sorted array of distinct actor ids.
+   *
+   * @param movies
+   *          The movies
+   */
+  public ActorPairCounter(List<Movie> movies) {
+    this.casts = new int[movies.size()][];
+    for (int m = 0; m < movies.size(); m++) {
+      int[] ids = movies.get(m).getCastIds().clone();
+      Arrays.sort(ids);
+      int n = 0;
+      for (int i = 0; i < ids.length; i++) {
+        if (n == 0 || ids[n - 1] != ids[i]) {
+          ids[n++] = ids[i];
+        }
+      }
+      this.casts[m] = Arrays.copyOf(ids, n);
+    }
+  }
+
+  /**
+   * 
+   * @param pair
+   *          A packed pair
+   * @return The name of the first actor of the pair
+   */
+  public String first(long pair) {
+    return this.actors.get((int) (pair >>> 32));
+  }
+
+  /**
+   * 
+   * @param pair
+   *          A packed pair
+   * @return The name of the second actor of the pair
+   */
+  public String second(long pair) {
+    return this.actors.get((int) pair);
+  }
+
+  /**
+   * Count all pairs of actors.
+   *
+   * @param pool
+   *          The pool the partitions are counted in
+   * @return The number of movies of every pair, keyed by packed pair
+   */
+  public LongIntCounter count(ForkJoinPool pool) {
+    return pool.invoke(new CountPartition(0, this.casts.length));
+  }
+
+  /**
+   * Find the pairs of actors who appear together in the most movies. Pairs
+   * with the same count are ranked by their packed key.
+   *
+   * @param pool
+   *          The pool the partitions are counted in
+   * @param k
+   *          The number of pairs
+   * @return Up to 'k' entries {pair, count}, with the highest count first
+   */
+  public List<long[]> mostFrequentPairs(ForkJoinPool pool, int k) {
+    if (k <= 0) {
+      return new ArrayList<>();
+    }
+    TopK<long[]> top = new TopK<>(k, (a, b) -> a[1] != b[1]
+        ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+    count(pool).forEach((pair, count) -> {
+      long[] worst = top.worst();
+      if (top.size() < k || count > worst[1]
+          || (count == worst[1] && pair < worst[0])) {
+        top.offer(new long[] { pair, count });
+      }
+    });
+    return top.toList();
+  }
+
+  private class CountPartition extends RecursiveTask<LongIntCounter> {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+
+    CountPartition(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected LongIntCounter compute() {
+      if (this.to - this.from <= PARTITION_SIZE) {
+        LongIntCounter counts = new LongIntCounter();
+        for (int m = this.from; m < this.to; m++) {
+          int[] cast = ActorPairCounter.this.casts[m];
+          for (int i = 0; i < cast.length; i++) {
+            long first = (long) cast[i] << 32;
+            for (int j = i + 1; j < cast.length; j++) {
+              counts.increment(first | cast[j]);
+            }
+          }
+        }
+        return counts;
+      }
+      int mid = (this.from + this.to) >>> 1;
+      CountPartition left = new CountPartition(this.from, mid);
+      left.fork();
+      LongIntCounter right = new CountPartition(mid, this.to).compute();
+      LongIntCounter counts = left.join();
+      if (counts.size() < right.size()) {
+        right.addAll(counts);
+        return right;
+      }
+      counts.addAll(right);
+      return counts;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answers several queries with a single pass over a list of movies. Each
+ * query registers its {@link MovieScan}, and the pass feeds every movie to all
+ * registered scans while it is in the cache, instead of sweeping the list once
+ * per query. The pass can run in parallel through a {@link ParallelScanner};
+ * each part of the list then holds one partial aggregate per query.
+ */
+public class BatchQueryExecutor {
+
+  /**
+   * The result of a registered query, available after the pass.
+   *
+   * @param <R>
+   *          The result
+   */
+  public static class Result<R> {
+    private R value;
+    private boolean done;
+
+    /**
+     *
+     * @return The result of the query
+     * @throws IllegalStateException
+     *           if the pass has not run yet
+     */
+    public R get() {
+      if (!this.done) {
+        throw new IllegalStateException("The batch has not been executed");
+      }
+      return this.value;
+    }
+  }
+
+  private final List<MovieScan<Object, Object>> scans = new ArrayList<>();
+  private final List<Result<Object>> results = new ArrayList<>();
+
+  /**
+   * Register a query for the next pass.
+   *
+   * @param scan
+   *          The query
+   * @return The result of the query, available after the pass
+   */
+  @SuppressWarnings("unchecked")
+  public <R> Result<R> register(MovieScan<?, R> scan) {
+    Result<R> result = new Result<>();
+    this.scans.add((MovieScan<Object, Object>) scan);
+    this.results.add((Result<Object>) result);
+    return result;
+  }
+
+  /**
+   * Answer all registered queries in one sequential pass.
+   *
+   * @param movies
+   *          The movies
+   */
+  public void execute(List<Movie> movies) {
+    AllScans all = new AllScans();
+    all.finish(ParallelScanner.scanPart(movies, all, 0, movies.size()));
+  }
+
+  /**
+   * Answer all registered queries in one pass run by 'scanner'.
+   *
+   * @param movies
+   *          The movies
+   * @param scanner
+   *          The scanner running the pass
+   */
+  public void execute(List<Movie> movies, ParallelScanner scanner) {
+    scanner.scan(movies, new AllScans());
+  }
+
+  /**
+   * The registered scans as one scan, whose partial aggregate holds the
+   * partial aggregates of all of them.
+   */
+  private class AllScans implements MovieScan<Object[], Void> {
+    private final List<MovieScan<Object, Object>> all = new ArrayList<>(
+        BatchQueryExecutor.this.scans);
+
+    @Override
+    public Object[] newPartial() {
+      Object[] partials = new Object[this.all.size()];
+      for (int q = 0; q < this.all.size(); q++) {
+        partials[q] = this.all.get(q).newPartial();
+      }
+      return partials;
+    }
+
+    @Override
+    public void accept(Object[] partial, Movie movie) {
+      for (int q = 0; q < this.all.size(); q++) {
+        this.all.get(q).accept(partial[q], movie);
+      }
+    }
+
+    @Override
+    public Object[] merge(Object[] left, Object[] right) {
+      for (int q = 0; q < this.all.size(); q++) {
+        left[q] = this.all.get(q).merge(left[q], right[q]);
+      }
+      return left;
+    }
+
+    @Override
+    public Void finish(Object[] partial) {
+      for (int q = 0; q < this.all.size(); q++) {
+        Result<Object> result = BatchQueryExecutor.this.results.get(q);
+        result.value = this.all.get(q).finish(partial[q]);
+        result.done = true;
+      }
+      return null;
+    }
+  }
+}
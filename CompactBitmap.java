@@ -0,0 +1,357 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A compressed set of non-negative ints in the style of a roaring bitmap. The
+ * values are split by their upper 16 bits into chunks. Sparse chunks store
+ * their lower 16 bits as a sorted char array, dense chunks as a bitset of 2^16
+ * bits.
+ */
+public class CompactBitmap {
+
+  /**
+   * The cardinality above which a chunk is stored as a bitset.
+   */
+  static final int ARRAY_LIMIT = 4096;
+
+  private static final int BITSET_WORDS = 1 << 10;
+
+  private char[] keys = new char[0];
+  private Object[] chunks = new Object[0];
+  private int[] cardinalities = new int[0];
+  private int size;
+
+  /**
+   * 
+   * @param value
+   *          The value to add
+   */
+  public void add(int value) {
+    char key = (char) (value >>> 16);
+    char low = (char) value;
+    int i = Arrays.binarySearch(this.keys, 0, this.size, key);
+    if (i < 0) {
+      i = -i - 1;
+      insertChunk(i, key);
+    }
+    Object chunk = this.chunks[i];
+    if (chunk instanceof long[]) {
+      long[] bits = (long[]) chunk;
+      long mask = 1L << low;
+      if ((bits[low >>> 6] & mask) == 0) {
+        bits[low >>> 6] |= mask;
+        this.cardinalities[i]++;
+      }
+      return;
+    }
+    char[] values = (char[]) chunk;
+    int n = this.cardinalities[i];
+    int pos = Arrays.binarySearch(values, 0, n, low);
+    if (pos >= 0) {
+      return;
+    }
+    pos = -pos - 1;
+    if (n == ARRAY_LIMIT) {
+      long[] bits = toBits(values, n);
+      bits[low >>> 6] |= 1L << low;
+      this.chunks[i] = bits;
+    } else {
+      if (n == values.length) {
+        values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, n * 2));
+        this.chunks[i] = values;
+      }
+      System.arraycopy(values, pos, values, pos + 1, n - pos);
+      values[pos] = low;
+    }
+    this.cardinalities[i]++;
+  }
+
+  /**
+   * 
+   * @param value
+   *          The value to remove
+   */
+  public void remove(int value) {
+    int i = Arrays.binarySearch(this.keys, 0, this.size, (char) (value >>> 16));
+    if (i < 0) {
+      return;
+    }
+    char low = (char) value;
+    Object chunk = this.chunks[i];
+    if (chunk instanceof long[]) {
+      long[] bits = (long[]) chunk;
+      long mask = 1L << low;
+      if ((bits[low >>> 6] & mask) != 0) {
+        bits[low >>> 6] &= ~mask;
+        this.cardinalities[i]--;
+      }
+    } else {
+      char[] values = (char[]) chunk;
+      int n = this.cardinalities[i];
+      int pos = Arrays.binarySearch(values, 0, n, low);
+      if (pos >= 0) {
+        System.arraycopy(values, pos + 1, values, pos, n - pos - 1);
+        this.cardinalities[i]--;
+      }
+    }
+    if (this.cardinalities[i] == 0) {
+      removeChunk(i);
+    }
+  }
+
+  /**
+   * 
+   * @param value
+   *          The value
+   * @return true if 'value' is in the set
+   */
+  public boolean contains(int value) {
+    int i = Arrays.binarySearch(this.keys, 0, this.size, (char) (value >>> 16));
+    if (i < 0) {
+      return false;
+    }
+    char low = (char) value;
+    Object chunk = this.chunks[i];
+    if (chunk instanceof long[]) {
+      return (((long[]) chunk)[low >>> 6] & (1L << low)) != 0;
+    }
+    return Arrays.binarySearch((char[]) chunk, 0, this.cardinalities[i], low) >= 0;
+  }
+
+  /**
+   * 
+   * @return The number of values in the set
+   */
+  public int cardinality() {
+    int total = 0;
+    for (int i = 0; i < this.size; i++) {
+      total += this.cardinalities[i];
+    }
+    return total;
+  }
+
+  /**
+   * 
+   * @return The values in ascending order
+   */
+  public int[] toArray() {
+    int[] result = new int[cardinality()];
+    int n = 0;
+    for (int i = 0; i < this.size; i++) {
+      int high = this.keys[i] << 16;
+      Object chunk = this.chunks[i];
+      if (chunk instanceof long[]) {
+        long[] bits = (long[]) chunk;
+        for (int w = 0; w < BITSET_WORDS; w++) {
+          long word = bits[w];
+          while (word != 0) {
+            result[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+            word &= word - 1;
+          }
+        }
+      } else {
+        char[] values = (char[]) chunk;
+        for (int j = 0; j < this.cardinalities[i]; j++) {
+          result[n++] = high | values[j];
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 
+   * @param other
+   *          Another bitmap
+   * @return A new bitmap containing the values contained in both bitmaps
+   */
+  public CompactBitmap and(CompactBitmap other) {
+    CompactBitmap result = new CompactBitmap();
+    for (int i = 0, j = 0; i < this.size && j < other.size;) {
+      if (this.keys[i] < other.keys[j]) {
+        i++;
+      } else if (this.keys[i] > other.keys[j]) {
+        j++;
+      } else {
+        if (this.chunks[i] instanceof char[] && other.chunks[j] instanceof char[]) {
+          result.appendChunk(this.keys[i], intersect((char[]) this.chunks[i],
+              this.cardinalities[i], (char[]) other.chunks[j], other.cardinalities[j]));
+        } else {
+          long[] bits = toBits(this.chunks[i], this.cardinalities[i]);
+          long[] otherBits = toBits(other.chunks[j], other.cardinalities[j]);
+          for (int w = 0; w < BITSET_WORDS; w++) {
+            bits[w] &= otherBits[w];
+          }
+          result.appendChunk(this.keys[i], bits);
+        }
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 
+   * @param other
+   *          Another bitmap
+   * @return A new bitmap containing the values contained in either bitmap
+   */
+  public CompactBitmap or(CompactBitmap other) {
+    CompactBitmap result = new CompactBitmap();
+    int i = 0;
+    int j = 0;
+    while (i < this.size || j < other.size) {
+      if (j == other.size || (i < this.size && this.keys[i] < other.keys[j])) {
+        result.appendChunk(this.keys[i], toBits(this.chunks[i], this.cardinalities[i]));
+        i++;
+      } else if (i == this.size || this.keys[i] > other.keys[j]) {
+        result.appendChunk(other.keys[j], toBits(other.chunks[j], other.cardinalities[j]));
+        j++;
+      } else {
+        long[] bits = toBits(this.chunks[i], this.cardinalities[i]);
+        long[] otherBits = toBits(other.chunks[j], other.cardinalities[j]);
+        for (int w = 0; w < BITSET_WORDS; w++) {
+          bits[w] |= otherBits[w];
+        }
+        result.appendChunk(this.keys[i], bits);
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 
+   * @param bitmaps
+   *          Some bitmaps
+   * @return A new bitmap containing the values contained in any of the
+   *         bitmaps, built in one pass with a running bitset per chunk
+   */
+  public static CompactBitmap or(Iterable<CompactBitmap> bitmaps) {
+    TreeMap<Character, long[]> union = new TreeMap<>();
+    for (CompactBitmap bitmap : bitmaps) {
+      for (int i = 0; i < bitmap.size; i++) {
+        long[] bits = union.computeIfAbsent(bitmap.keys[i], k -> new long[BITSET_WORDS]);
+        Object chunk = bitmap.chunks[i];
+        if (chunk instanceof long[]) {
+          long[] other = (long[]) chunk;
+          for (int w = 0; w < BITSET_WORDS; w++) {
+            bits[w] |= other[w];
+          }
+        } else {
+          char[] values = (char[]) chunk;
+          for (int j = 0; j < bitmap.cardinalities[i]; j++) {
+            bits[values[j] >>> 6] |= 1L << values[j];
+          }
+        }
+      }
+    }
+    CompactBitmap result = new CompactBitmap();
+    for (Map.Entry<Character, long[]> chunk : union.entrySet()) {
+      result.appendChunk(chunk.getKey(), chunk.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Append a chunk given as a bitset, converting it to an array chunk if it is
+   * sparse. Keys must be appended in ascending order.
+   */
+  private void appendChunk(char key, long[] bits) {
+    int cardinality = 0;
+    for (long word : bits) {
+      cardinality += Long.bitCount(word);
+    }
+    if (cardinality == 0) {
+      return;
+    }
+    insertChunk(this.size, key);
+    int i = this.size - 1;
+    this.cardinalities[i] = cardinality;
+    if (cardinality > ARRAY_LIMIT) {
+      this.chunks[i] = bits;
+      return;
+    }
+    char[] values = new char[cardinality];
+    int n = 0;
+    for (int w = 0; w < BITSET_WORDS; w++) {
+      long word = bits[w];
+      while (word != 0) {
+        values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+      }
+    }
+    this.chunks[i] = values;
+  }
+
+  /**
+   * Append a chunk given as a sorted char array. Keys must be appended in
+   * ascending order.
+   */
+  private void appendChunk(char key, char[] values) {
+    if (values.length == 0) {
+      return;
+    }
+    insertChunk(this.size, key);
+    this.chunks[this.size - 1] = values;
+    this.cardinalities[this.size - 1] = values.length;
+  }
+
+  private static char[] intersect(char[] a, int n, char[] b, int m) {
+    char[] result = new char[Math.min(n, m)];
+    int k = 0;
+    for (int i = 0, j = 0; i < n && j < m;) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        result[k++] = a[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, k);
+  }
+
+  private static long[] toBits(Object chunk, int cardinality) {
+    if (chunk instanceof long[]) {
+      return ((long[]) chunk).clone();
+    }
+    long[] bits = new long[BITSET_WORDS];
+    char[] values = (char[]) chunk;
+    for (int j = 0; j < cardinality; j++) {
+      bits[values[j] >>> 6] |= 1L << values[j];
+    }
+    return bits;
+  }
+
+  private void insertChunk(int i, char key) {
+    if (this.size == this.keys.length) {
+      int capacity = Math.max(4, this.size * 2);
+      this.keys = Arrays.copyOf(this.keys, capacity);
+      this.chunks = Arrays.copyOf(this.chunks, capacity);
+      this.cardinalities = Arrays.copyOf(this.cardinalities, capacity);
+    }
+    System.arraycopy(this.keys, i, this.keys, i + 1, this.size - i);
+    System.arraycopy(this.chunks, i, this.chunks, i + 1, this.size - i);
+    System.arraycopy(this.cardinalities, i, this.cardinalities, i + 1, this.size - i);
+    this.keys[i] = key;
+    this.chunks[i] = new char[4];
+    this.cardinalities[i] = 0;
+    this.size++;
+  }
+
+  private void removeChunk(int i) {
+    System.arraycopy(this.keys, i + 1, this.keys, i, this.size - i - 1);
+    System.arraycopy(this.chunks, i + 1, this.chunks, i, this.size - i - 1);
+    System.arraycopy(this.cardinalities, i + 1, this.cardinalities, i, this.size - i - 1);
+    this.size--;
+    this.chunks[this.size] = null;
+  }
+}
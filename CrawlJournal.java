@@ -0,0 +1,134 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An append-only record of the finished entries of a crawl. After each
+ * written 'i.json', a line "index&lt;TAB&gt;status&lt;TAB&gt;time&lt;TAB&gt;title"
+ * is appended and flushed. When a crawl is restarted, the latest line of each
+ * index tells whether the entry can be skipped: entries that were fetched
+ * successfully for the same title and are not older than the maximum age are
+ * done; failed or stale entries, and entries whose index now holds another
+ * title because the title list was edited, are crawled again.
+ */
+public class CrawlJournal implements Closeable {
+
+	private static final String OK = "ok";
+	private static final String FAILED = "failed";
+
+	/**
+	 * The latest successful fetch of an index.
+	 */
+	private static class Done {
+		final String title;
+		final long time;
+
+		Done(String title, long time) {
+			this.title = title;
+			this.time = time;
+		}
+	}
+
+	// index -> latest successful fetch; failed entries are absent
+	private final Map<Integer, Done> done = new HashMap<>();
+	private final long maxAgeMillis;
+	private final Writer writer;
+	private boolean closed;
+
+	/**
+	 * Read the entries of an existing journal and open it for appending.
+	 *
+	 * @param file
+	 *            the journal file, created if necessary
+	 * @param maxAgeMillis
+	 *            the age after which a successful entry is crawled again
+	 * @throws IOException
+	 */
+	public CrawlJournal(File file, long maxAgeMillis) throws IOException {
+		this.maxAgeMillis = maxAgeMillis;
+		if (file.exists()) {
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+				for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+					String[] fields = line.split("\t", 4);
+					if (fields.length != 4) {
+						continue; // e.g. a line cut off by a crash, or without a title
+					}
+					try {
+						int index = Integer.parseInt(fields[0]);
+						long time = Long.parseLong(fields[2]);
+						if (fields[1].equals(OK)) {
+							this.done.put(index, new Done(fields[3], time));
+						} else {
+							this.done.remove(index);
+						}
+					} catch (NumberFormatException e) {
+						continue;
+					}
+				}
+			}
+		}
+		this.writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param index
+	 *            the index of the entry
+	 * @param title
+	 *            the title the entry now has in the list
+	 * @return true if the entry was fetched successfully for 'title' and is not
+	 *         stale
+	 */
+	public synchronized boolean isDone(int index, String title) {
+		Done entry = this.done.get(index);
+		return entry != null && entry.title.equals(clean(title))
+				&& System.currentTimeMillis() - entry.time <= this.maxAgeMillis;
+	}
+
+	/**
+	 * Append the outcome of an entry to the journal.
+	 *
+	 * @param index
+	 *            the index of the entry
+	 * @param title
+	 *            the title of the entry
+	 * @param ok
+	 *            whether the entry was fetched successfully
+	 * @throws IOException
+	 *             also if the journal is closed
+	 */
+	public synchronized void record(int index, String title, boolean ok) throws IOException {
+		if (this.closed) {
+			throw new IOException("Crawl journal is closed");
+		}
+		long time = System.currentTimeMillis();
+		String cleanTitle = clean(title);
+		this.writer.write(index + "\t" + (ok ? OK : FAILED) + "\t" + time + "\t" + cleanTitle + "\n");
+		this.writer.flush();
+		if (ok) {
+			this.done.put(index, new Done(cleanTitle, time));
+		} else {
+			this.done.remove(index);
+		}
+	}
+
+	// a title as stored in a line of the journal
+	private static String clean(String title) {
+		return title.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.closed = true;
+		this.writer.close();
+	}
+}
@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+
+/**
+ * Paces the requests of the spider. Every host gets a token bucket whose rate
+ * adapts to the server: it grows slowly while requests succeed and is halved
+ * on timeouts, "429 Too Many Requests" and 5xx responses (additive increase,
+ * multiplicative decrease). A "Retry-After" header pauses all requests to the
+ * host for the given time.
+ */
+public class CrawlScheduler {
+
+	/**
+	 * The token bucket of one host.
+	 */
+	private class HostLimiter {
+		private double rate = CrawlScheduler.this.initialRate;
+		private double tokens = 1;
+		private long last = System.nanoTime();
+		private long pausedUntil = this.last;
+
+		/**
+		 * Take a token if one is available.
+		 *
+		 * @return 0 if a token was taken, otherwise the nanoseconds to wait
+		 *         before trying again
+		 */
+		synchronized long tryAcquire() {
+			long now = System.nanoTime();
+			if (now - this.pausedUntil < 0) {
+				return this.pausedUntil - now;
+			}
+			this.tokens = Math.min(CrawlScheduler.this.burst, this.tokens + (now - this.last) / 1e9 * this.rate);
+			this.last = now;
+			if (this.tokens >= 1) {
+				this.tokens -= 1;
+				return 0;
+			}
+			return (long) ((1 - this.tokens) / this.rate * 1e9);
+		}
+
+		void acquire() throws InterruptedIOException {
+			try {
+				for (long wait = tryAcquire(); wait > 0; wait = tryAcquire()) {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a request slot");
+			}
+		}
+
+		synchronized void succeeded() {
+			this.rate = Math.min(CrawlScheduler.this.maxRate, this.rate + CrawlScheduler.this.increase);
+		}
+
+		synchronized void overloaded() {
+			this.rate = Math.max(CrawlScheduler.this.minRate, this.rate / 2);
+		}
+
+		synchronized void pause(long millis) {
+			this.pausedUntil = Math.max(this.pausedUntil - System.nanoTime(), millis * 1000000) + System.nanoTime();
+			this.tokens = 0;
+			overloaded();
+		}
+	}
+
+	private final ConcurrentHashMap<String, HostLimiter> hosts = new ConcurrentHashMap<>();
+	private final double initialRate;
+	private final double minRate;
+	private final double maxRate;
+	private final double increase;
+	private final double burst;
+	private final long baseBackoff;
+	private final long maxBackoff;
+	private final int maxRetryAfter;
+
+	/**
+	 * A scheduler starting at 2 requests per second per host, adapting between
+	 * 0.2 and 20 requests per second.
+	 */
+	public CrawlScheduler() {
+		this(2, 0.2, 20, 0.1, 2, 500, 30000, 5);
+	}
+
+	/**
+	 * @param initialRate
+	 *            the initial requests per second per host
+	 * @param minRate
+	 *            the lowest rate after overloads
+	 * @param maxRate
+	 *            the highest rate after successes
+	 * @param increase
+	 *            the rate added after each successful request
+	 * @param burst
+	 *            the number of requests that may be sent at once after an idle
+	 *            period
+	 * @param baseBackoff
+	 *            the backoff before the first retry in milliseconds
+	 * @param maxBackoff
+	 *            the longest backoff in milliseconds
+	 * @param maxRetryAfter
+	 *            how often a request is repeated after 429/503 responses
+	 */
+	public CrawlScheduler(double initialRate, double minRate, double maxRate, double increase, double burst,
+			long baseBackoff, long maxBackoff, int maxRetryAfter) {
+		this.initialRate = initialRate;
+		this.minRate = minRate;
+		this.maxRate = maxRate;
+		this.increase = increase;
+		this.burst = burst;
+		this.baseBackoff = baseBackoff;
+		this.maxBackoff = maxBackoff;
+		this.maxRetryAfter = maxRetryAfter;
+	}
+
+	/**
+	 * Fetch a page once the rate limit of its host permits. Responses with
+	 * status 429 or 503 pause the host as requested by their "Retry-After"
+	 * header (or by the backoff, if there is none) and are repeated. Only 429,
+	 * 5xx and timeouts lower the rate; other 4xx statuses, like 404 for a
+	 * missing title, are thrown without slowing the host down.
+	 *
+	 * @param url
+	 *            the URL
+	 * @param timeoutMillis
+	 *            the connect and read timeout
+	 * @return the page content
+	 * @throws SocketTimeoutException
+	 *             if the request timed out
+	 * @throws HttpStatusException
+	 *             if the server answered with an error status
+	 * @throws IOException
+	 */
+	public String fetch(String url, int timeoutMillis) throws IOException {
+		HostLimiter host = limiter(url);
+		for (int attempt = 0;; attempt++) {
+			host.acquire();
+			Connection.Response response;
+			try {
+				response = Jsoup.connect(url).timeout(timeoutMillis).ignoreHttpErrors(true).execute();
+			} catch (SocketTimeoutException e) {
+				host.overloaded();
+				throw e;
+			}
+			int status = response.statusCode();
+			if ((status == 429 || status == 503) && attempt < this.maxRetryAfter) {
+				host.pause(retryAfter(response.header("Retry-After"), attempt));
+				continue;
+			}
+			if (status == 429 || status >= 500) {
+				host.overloaded();
+				throw new HttpStatusException("HTTP error fetching URL", status, url);
+			}
+			if (status >= 400) {
+				// e.g. 404 for a missing title: the server answered normally
+				host.succeeded();
+				throw new HttpStatusException("HTTP error fetching URL", status, url);
+			}
+			host.succeeded();
+			return response.body();
+		}
+	}
+
+	/**
+	 * Wait before retrying a failed request.
+	 *
+	 * @param attempt
+	 *            the number of failed attempts before, starting at 0
+	 * @throws InterruptedIOException
+	 */
+	public void backoff(int attempt) throws InterruptedIOException {
+		try {
+			Thread.sleep(backoffMillis(attempt));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during backoff");
+		}
+	}
+
+	/**
+	 * @param attempt
+	 *            the number of failed attempts before, starting at 0
+	 * @return an exponential backoff with "equal jitter": half of the delay is
+	 *         fixed, the other half random
+	 */
+	long backoffMillis(int attempt) {
+		long delay = Math.min(this.maxBackoff, this.baseBackoff << Math.min(attempt, 20));
+		return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+	}
+
+	/**
+	 * @return the delay requested by a "Retry-After" header in seconds or as
+	 *         HTTP date, or the backoff if there is no valid header
+	 */
+	private long retryAfter(String header, int attempt) {
+		if (header != null) {
+			try {
+				return Math.min(this.maxBackoff, Long.parseLong(header.trim()) * 1000);
+			} catch (NumberFormatException e) {
+				try {
+					ZonedDateTime date = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+					long millis = Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis();
+					return Math.max(0, Math.min(this.maxBackoff, millis));
+				} catch (DateTimeParseException e2) {
+					// fall back to the backoff
+				}
+			}
+		}
+		return backoffMillis(attempt);
+	}
+
+	private HostLimiter limiter(String url) throws MalformedURLException {
+		return this.hosts.computeIfAbsent(new URL(url).getHost(), h -> new HostLimiter());
+	}
+}
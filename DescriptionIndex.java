@@ -0,0 +1,395 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An inverted index over the descriptions of a list of movies. Documents are
+ * identified by their position in the list.
+ *
+ * The index holds the postings of every lowercase token with the token
+ * positions, and the postings of every lowercase character trigram, which are
+ * used to find candidates for substring matches like "kill" inside "killer".
+ *
+ * Documents can be added, replaced and removed in place; the postings stay
+ * sorted by document. The index keeps the movies, not copies of their
+ * descriptions, and verifies candidates against the movie's description, so
+ * movies mapped from a snapshot are not copied onto the heap.
+ */
+public class DescriptionIndex implements MovieIndex {
+
+  /**
+   * The length of the character n-grams.
+   */
+  static final int N = 3;
+
+  /**
+   * The documents containing a token, in ascending order, each with the
+   * positions of the token in the document.
+   */
+  public static class Postings {
+    private final IntList docs = new IntList(4);
+    private final IntList offsets = new IntList(4);
+    private final IntList positions = new IntList(4);
+
+    void add(int doc, int position) {
+      if (this.docs.size() == 0 || this.docs.last() < doc) {
+        this.docs.add(doc);
+        this.offsets.add(this.positions.size());
+        this.positions.add(position);
+      } else if (this.docs.last() == doc) {
+        this.positions.add(position);
+      } else {
+        // a document indexed again after later ones
+        int i = this.docs.binarySearch(doc);
+        int at;
+        if (i < 0) {
+          i = -i - 1;
+          at = this.offsets.get(i);
+          this.docs.insert(i, doc);
+          this.offsets.insert(i, at);
+        } else {
+          at = end(i);
+        }
+        this.positions.insert(at, position);
+        for (int j = i + 1; j < this.offsets.size(); j++) {
+          this.offsets.set(j, this.offsets.get(j) + 1);
+        }
+      }
+    }
+
+    void remove(int doc) {
+      int i = this.docs.binarySearch(doc);
+      if (i < 0) {
+        return;
+      }
+      int from = this.offsets.get(i);
+      int to = end(i);
+      this.positions.remove(from, to);
+      this.docs.remove(i, i + 1);
+      this.offsets.remove(i, i + 1);
+      for (int j = i; j < this.offsets.size(); j++) {
+        this.offsets.set(j, this.offsets.get(j) - (to - from));
+      }
+    }
+
+    private int end(int i) {
+      return i + 1 < this.offsets.size() ? this.offsets.get(i + 1)
+          : this.positions.size();
+    }
+
+    /**
+     * 
+     * @return The number of documents containing the token
+     */
+    public int size() {
+      return this.docs.size();
+    }
+
+    /**
+     * 
+     * @param i
+     *          The index of the entry
+     * @return The document of the i-th entry
+     */
+    public int doc(int i) {
+      return this.docs.get(i);
+    }
+
+    /**
+     * 
+     * @return The documents containing the token
+     */
+    public int[] docs() {
+      return this.docs.toArray();
+    }
+
+    /**
+     * 
+     * @param i
+     *          The index of the entry
+     * @return The token positions in the document of the i-th entry
+     */
+    public int[] positions(int i) {
+      int from = this.offsets.get(i);
+      int to = end(i);
+      int[] result = new int[to - from];
+      for (int j = from; j < to; j++) {
+        result[j - from] = this.positions.get(j);
+      }
+      return result;
+    }
+  }
+
+  private static final Postings EMPTY = new Postings();
+
+  // the indexed movies; null at removed positions
+  private final List<Movie> movies;
+  private final Map<String, Postings> tokens = new HashMap<>();
+  private final Map<Long, IntList> grams = new HashMap<>();
+
+  /**
+   * Index the descriptions of 'movies'.
+   *
+   * @param movies
+   *          The movies
+   */
+  public DescriptionIndex(List<Movie> movies) {
+    this.movies = new ArrayList<>(movies.size());
+    for (int doc = 0; doc < movies.size(); doc++) {
+      add(doc, movies.get(doc));
+    }
+  }
+
+  @Override
+  public void add(int doc, Movie movie) {
+    if (doc == this.movies.size()) {
+      this.movies.add(movie);
+    } else {
+      this.movies.set(doc, movie);
+    }
+    index(doc, description(doc).toLowerCase());
+  }
+
+  /**
+   * @return The description of a document, or "" if it has none
+   */
+  private String description(int doc) {
+    Movie movie = this.movies.get(doc);
+    String description = movie == null ? null : movie.getDescription();
+    return description == null ? "" : description;
+  }
+
+  /**
+   * Remove the postings of a document, which are found by tokenizing the
+   * description of the indexed movie again.
+   */
+  @Override
+  public void remove(int doc, Movie movie) {
+    String text = description(doc).toLowerCase();
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean inToken = i < text.length()
+          && Character.isLetterOrDigit(text.charAt(i));
+      if (inToken && start < 0) {
+        start = i;
+      } else if (!inToken && start >= 0) {
+        String token = text.substring(start, i);
+        Postings postings = this.tokens.get(token);
+        if (postings != null) {
+          postings.remove(doc);
+          if (postings.size() == 0) {
+            this.tokens.remove(token);
+          }
+        }
+        start = -1;
+      }
+    }
+    for (int i = 0; i + N <= text.length(); i++) {
+      Long gram = gram(text, i);
+      IntList docs = this.grams.get(gram);
+      if (docs != null) {
+        int j = docs.binarySearch(doc);
+        if (j >= 0) {
+          docs.remove(j, j + 1);
+          if (docs.size() == 0) {
+            this.grams.remove(gram);
+          }
+        }
+      }
+    }
+    if (doc == this.movies.size() - 1) {
+      this.movies.remove(doc);
+    } else {
+      this.movies.set(doc, null);
+    }
+  }
+
+  private void index(int doc, String text) {
+    int position = 0;
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean inToken = i < text.length()
+          && Character.isLetterOrDigit(text.charAt(i));
+      if (inToken && start < 0) {
+        start = i;
+      } else if (!inToken && start >= 0) {
+        this.tokens.computeIfAbsent(text.substring(start, i), k -> new Postings())
+            .add(doc, position++);
+        start = -1;
+      }
+    }
+    for (int i = 0; i + N <= text.length(); i++) {
+      IntList docs = this.grams.computeIfAbsent(gram(text, i), k -> new IntList(4));
+      if (docs.size() == 0 || docs.last() < doc) {
+        docs.add(doc);
+      } else if (docs.last() != doc) {
+        int j = docs.binarySearch(doc);
+        if (j < 0) {
+          docs.insert(-j - 1, doc);
+        }
+      }
+    }
+  }
+
+  private static long gram(String text, int from) {
+    long key = 0;
+    for (int i = from; i < from + N; i++) {
+      key = (key << 16) | text.charAt(i);
+    }
+    return key;
+  }
+
+  /**
+   * 
+   * @return The number of indexed documents
+   */
+  public int size() {
+    return this.movies.size();
+  }
+
+  /**
+   * 
+   * @param token
+   *          A token, matched case-insensitively
+   * @return The postings of the token
+   */
+  public Postings getPostings(String token) {
+    Postings postings = this.tokens.get(token.toLowerCase());
+    return postings == null ? EMPTY : postings;
+  }
+
+  /**
+   * Find the documents whose lowercase description contains 'substring'.
+   *
+   * @param substring
+   *          The substring, matched case-insensitively
+   * @return The matching documents in ascending order
+   */
+  public int[] docsContaining(String substring) {
+    String lower = substring.toLowerCase();
+    int[] candidates = candidates(lower);
+    IntList result = new IntList();
+    for (int doc : candidates) {
+      if (description(doc).toLowerCase().contains(lower)) {
+        result.add(doc);
+      }
+    }
+    return result.toArray();
+  }
+
+  /**
+   * Find the documents whose description contains 'substring' (case-aware).
+   *
+   * @param substring
+   *          The substring
+   * @return The matching documents in ascending order
+   */
+  public int[] docsContainingExact(String substring) {
+    int[] candidates = candidates(substring.toLowerCase());
+    IntList result = new IntList();
+    for (int doc : candidates) {
+      if (description(doc).contains(substring)) {
+        result.add(doc);
+      }
+    }
+    return result.toArray();
+  }
+
+  /**
+   * Estimate the number of documents containing 'substring' without verifying
+   * any candidate.
+   *
+   * @param substring
+   *          The substring, matched in any case
+   * @return An upper bound of the number of matching documents: the length
+   *         of the shortest trigram postings list of the substring
+   */
+  public int estimateDocsContaining(String substring) {
+    String lower = substring.toLowerCase();
+    if (lower.length() < N) {
+      return size();
+    }
+    int estimate = size();
+    for (int i = 0; i + N <= lower.length(); i++) {
+      IntList docs = this.grams.get(gram(lower, i));
+      estimate = Math.min(estimate, docs == null ? 0 : docs.size());
+    }
+    return estimate;
+  }
+
+  /**
+   * 
+   * @param doc
+   *          The document
+   * @param substring
+   *          The substring, matched case-insensitively
+   * @return The number of non-overlapping occurrences of 'substring' in the
+   *         lowercase description of 'doc'
+   */
+  public int countOccurrences(int doc, String substring) {
+    String lower = substring.toLowerCase();
+    String text = description(doc).toLowerCase();
+    int count = 0;
+    for (int i = text.indexOf(lower); i >= 0 && !lower.isEmpty(); i = text
+        .indexOf(lower, i + lower.length())) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Intersect the trigram postings of a lowercase String, starting with the
+   * shortest list. Strings shorter than a trigram match every document.
+   */
+  private int[] candidates(String lower) {
+    if (lower.length() < N) {
+      int[] all = new int[size()];
+      for (int i = 0; i < all.length; i++) {
+        all[i] = i;
+      }
+      return all;
+    }
+    IntList[] lists = new IntList[lower.length() - N + 1];
+    for (int i = 0; i < lists.length; i++) {
+      lists[i] = this.grams.get(gram(lower, i));
+      if (lists[i] == null) {
+        return new int[0];
+      }
+    }
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+    int[] result = lists[0].toArray();
+    for (int i = 1; i < lists.length && result.length > 0; i++) {
+      result = intersect(result, lists[i].toArray());
+    }
+    return result;
+  }
+
+  /**
+   * 
+   * @param a
+   *          A sorted array
+   * @param b
+   *          A sorted array
+   * @return The sorted values contained in both arrays
+   */
+  public static int[] intersect(int[] a, int[] b) {
+    int[] result = new int[Math.min(a.length, b.length)];
+    int n = 0;
+    for (int i = 0, j = 0; i < a.length && j < b.length;) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        result[n++] = a[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, n);
+  }
+}
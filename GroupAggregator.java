@@ -0,0 +1,149 @@
+//package ue_inforet_imdb_spider_study;
+
+/**
+ * Aggregates values by a dense int key, e.g. a year or a dictionary id of a
+ * MovieTable column. Each key in [minKey, maxKey] owns one slot of primitive
+ * arrays holding the count, minimum and maximum of its values, and the rows
+ * where the minimum and maximum were found, so adding a value allocates
+ * nothing.
+ *
+ * Of equal values, the smallest row is kept as argmin and argmax, so the
+ * result does not depend on the order in which rows are added.
+ */
+public class GroupAggregator {
+
+  private final int minKey;
+  private final int[] count;
+  private final double[] min;
+  private final double[] max;
+  private final int[] argMin;
+  private final int[] argMax;
+
+  /**
+   *
+   * @param minKey
+   *          The smallest key
+   * @param maxKey
+   *          The largest key
+   */
+  public GroupAggregator(int minKey, int maxKey) {
+    int groups = Math.max(0, maxKey - minKey + 1);
+    this.minKey = minKey;
+    this.count = new int[groups];
+    this.min = new double[groups];
+    this.max = new double[groups];
+    this.argMin = new int[groups];
+    this.argMax = new int[groups];
+  }
+
+  /**
+   *
+   * @return The smallest key
+   */
+  public int getMinKey() {
+    return this.minKey;
+  }
+
+  /**
+   *
+   * @return The largest key
+   */
+  public int getMaxKey() {
+    return this.minKey + this.count.length - 1;
+  }
+
+  /**
+   *
+   * @param key
+   *          The key
+   * @return true if 'key' is in [getMinKey(), getMaxKey()]
+   */
+  public boolean contains(int key) {
+    return key - this.minKey >= 0 && key - this.minKey < this.count.length;
+  }
+
+  /**
+   * Add the value of a row to its group. Keys outside the range are ignored.
+   *
+   * @param key
+   *          The key of the group
+   * @param row
+   *          The row of the value
+   * @param value
+   *          The value
+   * @return true if the value was added
+   */
+  public boolean add(int key, int row, double value) {
+    if (!contains(key)) {
+      return false;
+    }
+    int g = key - this.minKey;
+    if (this.count[g]++ == 0) {
+      this.min[g] = value;
+      this.max[g] = value;
+      this.argMin[g] = row;
+      this.argMax[g] = row;
+      return true;
+    }
+    if (value < this.min[g] || value == this.min[g] && row < this.argMin[g]) {
+      this.min[g] = value;
+      this.argMin[g] = row;
+    }
+    if (value > this.max[g] || value == this.max[g] && row < this.argMax[g]) {
+      this.max[g] = value;
+      this.argMax[g] = row;
+    }
+    return true;
+  }
+
+  /**
+   *
+   * @param key
+   *          The key of the group
+   * @return The number of values added to the group
+   */
+  public int getCount(int key) {
+    return contains(key) ? this.count[key - this.minKey] : 0;
+  }
+
+  /**
+   *
+   * @param key
+   *          The key of the group
+   * @return The smallest value of the group, or NaN if it is empty
+   */
+  public double getMin(int key) {
+    return getCount(key) == 0 ? Double.NaN : this.min[key - this.minKey];
+  }
+
+  /**
+   *
+   * @param key
+   *          The key of the group
+   * @return The largest value of the group, or NaN if it is empty
+   */
+  public double getMax(int key) {
+    return getCount(key) == 0 ? Double.NaN : this.max[key - this.minKey];
+  }
+
+  /**
+   *
+   * @param key
+   *          The key of the group
+   * @return The first row with the smallest value, or -1 if the group is
+   *         empty
+   */
+  public int getArgMin(int key) {
+    return getCount(key) == 0 ? -1 : this.argMin[key - this.minKey];
+  }
+
+  /**
+   *
+   * @param key
+   *          The key of the group
+   * @return The first row with the largest value, or -1 if the group is empty
+   */
+  public int getArgMax(int key) {
+    return getCount(key) == 0 ? -1 : this.argMax[key - this.minKey];
+  }
+}
@@ -0,0 +1,456 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A movie whose fields are held on the heap, as filled by MovieReader.
+ */
+public class HeapMovie extends Movie {
+
+  private String title;
+  private String year;
+  private String url;
+  private List<String> genreList = new ArrayList<>();
+  private List<String> countryList = new ArrayList<>();
+  private String description;
+  private String budget;
+  private String gross;
+  private String ratingValue;
+  private String ratingCount;
+  private String duration;
+  private List<String> castList = new ArrayList<>();
+  private List<String> characterList = new ArrayList<>();
+  private List<String> directorList = new ArrayList<>();
+
+  // normalized values, filled once by MovieReader at load time
+  private int yearNumber;
+  private long budgetAmount;
+  private String budgetCurrency = "";
+  private long grossAmount;
+  private String grossCurrency = "";
+  private float rating;
+  private int voteCount;
+  private int durationMinutes;
+
+  // ids of the list values in the global SymbolTable, computed on first use
+  // if MovieReader did not fill them
+  private int[] genreIds;
+  private int[] countryIds;
+  private int[] castIds;
+  private int[] characterIds;
+  private int[] directorIds;
+
+  @Override
+  public String getTitle() {
+    return this.title;
+  }
+
+  /**
+   * 
+   * @param title
+   *          The title
+   */
+  public void setTitle(String title) {
+    this.title = title;
+  }
+
+  @Override
+  public String getYear() {
+    if (this.year == null || this.year.trim().equals("")) {
+      return "0";
+    }
+    return this.year;
+  }
+
+  /**
+   * 
+   * @param year
+   *          The year
+   */
+  public void setYear(String year) {
+    this.year = year;
+  }
+
+  @Override
+  public String getUrl() {
+    return this.url;
+  }
+
+  /**
+   * 
+   * @param url
+   *          The URL
+   */
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  @Override
+  public List<String> getGenreList() {
+    return this.genreList;
+  }
+
+  /**
+   * 
+   * @param genreList
+   *          The genreList
+   */
+  public void setGenreList(List<String> genreList) {
+    this.genreList = genreList;
+    this.genreIds = null;
+  }
+
+  @Override
+  public int[] getGenreIds() {
+    if (this.genreIds == null) {
+      this.genreIds = SymbolTable.global().intern(this.genreList);
+    }
+    return this.genreIds;
+  }
+
+  /**
+   * 
+   * @param genreIds
+   *          The ids of the genreList in the global SymbolTable
+   */
+  public void setGenreIds(int[] genreIds) {
+    this.genreIds = genreIds;
+  }
+
+  @Override
+  public List<String> getCountryList() {
+    return this.countryList;
+  }
+
+  /**
+   * 
+   * @param countryList
+   *          The countryList
+   */
+  public void setCountryList(List<String> countryList) {
+    this.countryList = countryList;
+    this.countryIds = null;
+  }
+
+  @Override
+  public int[] getCountryIds() {
+    if (this.countryIds == null) {
+      this.countryIds = SymbolTable.global().intern(this.countryList);
+    }
+    return this.countryIds;
+  }
+
+  /**
+   * 
+   * @param countryIds
+   *          The ids of the countryList in the global SymbolTable
+   */
+  public void setCountryIds(int[] countryIds) {
+    this.countryIds = countryIds;
+  }
+
+  @Override
+  public String getDescription() {
+    return this.description;
+  }
+
+  /**
+   * 
+   * @param description
+   *          The description
+   */
+  public void setDescription(String description) {
+    this.description = description;
+  }
+
+  @Override
+  public String getBudget() {
+    if (this.budget == null || this.budget.trim().equals("")) {
+      return "0";
+    }
+    return this.budget;
+  }
+
+  /**
+   * 
+   * @param budget
+   *          The budget
+   */
+  public void setBudget(String budget) {
+    this.budget = budget;
+  }
+
+  @Override
+  public String getGross() {
+    if (this.gross == null || this.gross.trim().equals("")) {
+      return "0";
+    }
+    return this.gross;
+  }
+
+  /**
+   * 
+   * @param gross
+   *          The gross
+   */
+  public void setGross(String gross) {
+    this.gross = gross;
+  }
+
+  @Override
+  public String getRatingValue() {
+    if (this.ratingValue == null || this.ratingValue.trim().equals("")) {
+      return "0";
+    }
+    return this.ratingValue;
+  }
+
+  /**
+   * 
+   * @param ratingValue
+   *          The ratingValue
+   */
+  public void setRatingValue(String ratingValue) {
+    this.ratingValue = ratingValue;
+  }
+
+  @Override
+  public String getRatingCount() {
+    if (this.ratingCount == null || this.ratingCount.trim().equals("")) {
+      return "0";
+    }
+    return this.ratingCount;
+  }
+
+  /**
+   * 
+   * @param ratingCount
+   *          The ratingCount
+   */
+  public void setRatingCount(String ratingCount) {
+    this.ratingCount = ratingCount;
+  }
+
+  @Override
+  public String getDuration() {
+    return this.duration;
+  }
+
+  /**
+   * 
+   * @param duration
+   *          The duration
+   */
+  public void setDuration(String duration) {
+    this.duration = duration;
+  }
+
+  @Override
+  public List<String> getCastList() {
+    return this.castList;
+  }
+
+  /**
+   * 
+   * @param castList
+   *          The castList
+   */
+  public void setCastList(List<String> castList) {
+    this.castList = castList;
+    this.castIds = null;
+  }
+
+  @Override
+  public int[] getCastIds() {
+    if (this.castIds == null) {
+      this.castIds = SymbolTable.global().intern(this.castList);
+    }
+    return this.castIds;
+  }
+
+  /**
+   * 
+   * @param castIds
+   *          The ids of the castList in the global SymbolTable
+   */
+  public void setCastIds(int[] castIds) {
+    this.castIds = castIds;
+  }
+
+  @Override
+  public List<String> getCharacterList() {
+    return this.characterList;
+  }
+
+  /**
+   * 
+   * @param characterList
+   *          The characterList
+   */
+  public void setCharacterList(List<String> characterList) {
+    this.characterList = characterList;
+    this.characterIds = null;
+  }
+
+  @Override
+  public int[] getCharacterIds() {
+    if (this.characterIds == null) {
+      this.characterIds = SymbolTable.global().intern(this.characterList);
+    }
+    return this.characterIds;
+  }
+
+  /**
+   * 
+   * @param characterIds
+   *          The ids of the characterList in the global SymbolTable
+   */
+  public void setCharacterIds(int[] characterIds) {
+    this.characterIds = characterIds;
+  }
+
+  @Override
+  public List<String> getDirectorList() {
+    return this.directorList;
+  }
+
+  /**
+   * 
+   * @param directorList
+   *          The directorList
+   */
+  public void setDirectorList(List<String> directorList) {
+    this.directorList = directorList;
+    this.directorIds = null;
+  }
+
+  @Override
+  public int[] getDirectorIds() {
+    if (this.directorIds == null) {
+      this.directorIds = SymbolTable.global().intern(this.directorList);
+    }
+    return this.directorIds;
+  }
+
+  /**
+   * 
+   * @param directorIds
+   *          The ids of the directorList in the global SymbolTable
+   */
+  public void setDirectorIds(int[] directorIds) {
+    this.directorIds = directorIds;
+  }
+
+  @Override
+  public int getYearNumber() {
+    return this.yearNumber;
+  }
+
+  /**
+   * 
+   * @param yearNumber
+   *          The year as a number
+   */
+  public void setYearNumber(int yearNumber) {
+    this.yearNumber = yearNumber;
+  }
+
+  @Override
+  public long getBudgetAmount() {
+    return this.budgetAmount;
+  }
+
+  /**
+   * 
+   * @param budgetAmount
+   *          The budget in whole units of the budget currency
+   */
+  public void setBudgetAmount(long budgetAmount) {
+    this.budgetAmount = budgetAmount;
+  }
+
+  @Override
+  public String getBudgetCurrency() {
+    return this.budgetCurrency;
+  }
+
+  /**
+   * 
+   * @param budgetCurrency
+   *          The ISO currency code of the budget
+   */
+  public void setBudgetCurrency(String budgetCurrency) {
+    this.budgetCurrency = budgetCurrency;
+  }
+
+  @Override
+  public long getGrossAmount() {
+    return this.grossAmount;
+  }
+
+  /**
+   * 
+   * @param grossAmount
+   *          The gross in whole units of the gross currency
+   */
+  public void setGrossAmount(long grossAmount) {
+    this.grossAmount = grossAmount;
+  }
+
+  @Override
+  public String getGrossCurrency() {
+    return this.grossCurrency;
+  }
+
+  /**
+   * 
+   * @param grossCurrency
+   *          The ISO currency code of the gross
+   */
+  public void setGrossCurrency(String grossCurrency) {
+    this.grossCurrency = grossCurrency;
+  }
+
+  @Override
+  public float getRating() {
+    return this.rating;
+  }
+
+  /**
+   * 
+   * @param rating
+   *          The IMDB rating as a number
+   */
+  public void setRating(float rating) {
+    this.rating = rating;
+  }
+
+  @Override
+  public int getVoteCount() {
+    return this.voteCount;
+  }
+
+  /**
+   * 
+   * @param voteCount
+   *          The number of IMDB votes
+   */
+  public void setVoteCount(int voteCount) {
+    this.voteCount = voteCount;
+  }
+
+  @Override
+  public int getDurationMinutes() {
+    return this.durationMinutes;
+  }
+
+  /**
+   * 
+   * @param durationMinutes
+   *          The duration in minutes
+   */
+  public void setDurationMinutes(int durationMinutes) {
+    this.durationMinutes = durationMinutes;
+  }
+}
@@ -1,11 +1,13 @@
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 @SuppressWarnings("static-method")
 public class IMDBQueries {
@@ -18,7 +20,7 @@ public class IMDBQueries {
    * @param <V>
    *          second value
    */
-  class Tuple<K, V> {
+  static class Tuple<K, V> {
     K first;
     V second;
 
@@ -37,9 +39,204 @@ public class IMDBQueries {
       return this.first.equals(((Tuple<?, ?>) obj).first)
           && this.second.equals(((Tuple<?, ?>) obj).second);
     }
-    
+
+  }
+
+  /**
+   * The number of results of the "top ten" queries.
+   */
+  static final int TOP_TEN = 10;
+
+  /**
+   * 
+   * @return An order on (movie, loss) tuples by decreasing loss
+   */
+  private Comparator<Tuple<Movie, Long>> byLoss() {
+    return Comparator.comparing((Tuple<Movie, Long> tuple) -> tuple.second)
+        .reversed();
+  }
+
+  /**
+   * 
+   * @return An order on (value, count) tuples by decreasing count
+   */
+  private static <K> Comparator<Tuple<K, Integer>> byCount() {
+    return Comparator.comparing((Tuple<K, Integer> tuple) -> tuple.second)
+        .reversed();
+  }
+
+  /**
+   * 
+   * @return An order on (movie, value) tuples by decreasing IMDB rating
+   */
+  private <V> Comparator<Tuple<Movie, V>> byRating() {
+    return Comparator
+        .comparingDouble((Tuple<Movie, V> tuple) -> tuple.first.getRating())
+        .reversed();
+  }
+
+  /**
+   * Run a scan over all of 'movies' as a single part on the calling thread,
+   * as the sequential queries do.
+   */
+  private static <P, R> R scanAll(List<Movie> movies, MovieScan<P, R> scan) {
+    return scan
+        .finish(ParallelScanner.scanPart(movies, scan, 0, movies.size()));
+  }
+
+  /**
+   * A scan selecting the top ten of the values 'accept' offers for each movie.
+   */
+  private static <T> MovieScan<TopK<T>, List<T>> topTenScan(
+      Comparator<? super T> order, BiConsumer<TopK<T>, Movie> accept) {
+    return new MovieScan<TopK<T>, List<T>>() {
+      @Override
+      public TopK<T> newPartial() {
+        return new TopK<>(TOP_TEN, order);
+      }
+
+      @Override
+      public void accept(TopK<T> partial, Movie movie) {
+        accept.accept(partial, movie);
+      }
+
+      @Override
+      public TopK<T> merge(TopK<T> left, TopK<T> right) {
+        left.addAll(right);
+        return left;
+      }
+
+      @Override
+      public List<T> finish(TopK<T> partial) {
+        return partial.toList();
+      }
+    };
+  }
+
+  /**
+   * A scan selecting the movies matching 'filter', sorted by 'order'. Movies
+   * that are equal in 'order' keep the order of the list.
+   */
+  private static MovieScan<List<Movie>, List<Movie>> filterScan(
+      Predicate<Movie> filter, Comparator<Movie> order) {
+    return new MovieScan<List<Movie>, List<Movie>>() {
+      @Override
+      public List<Movie> newPartial() {
+        return new ArrayList<>();
+      }
+
+      @Override
+      public void accept(List<Movie> partial, Movie movie) {
+        if (filter.test(movie)) {
+          partial.add(movie);
+        }
+      }
+
+      @Override
+      public List<Movie> merge(List<Movie> left, List<Movie> right) {
+        left.addAll(right);
+        return left;
+      }
+
+      @Override
+      public List<Movie> finish(List<Movie> partial) {
+        partial.sort(order);
+        return partial;
+      }
+    };
+  }
+
+  /**
+   * A scan counting the ids 'ids' returns for each movie, and selecting the
+   * top ten names that pass 'filter' and occur more than once. Each part
+   * counts into its own sparse IdCounter, which only grows with the ids of
+   * the part, and the counters are merged entry by entry.
+   */
+  private static MovieScan<IdCounter, List<Tuple<String, Integer>>> countScan(
+      Function<Movie, int[]> ids, Predicate<String> filter) {
+    SymbolTable symbols = SymbolTable.global();
+    return new MovieScan<IdCounter, List<Tuple<String, Integer>>>() {
+      @Override
+      public IdCounter newPartial() {
+        return new IdCounter();
+      }
+
+      @Override
+      public void accept(IdCounter partial, Movie movie) {
+        for (int id : ids.apply(movie)) {
+          partial.increment(id);
+        }
+      }
+
+      @Override
+      public IdCounter merge(IdCounter left, IdCounter right) {
+        IdCounter into = left.size() >= right.size() ? left : right;
+        into.addAll(into == left ? right : left);
+        return into;
+      }
+
+      @Override
+      public List<Tuple<String, Integer>> finish(IdCounter partial) {
+        TopK<Tuple<String, Integer>> result = new TopK<>(TOP_TEN, byCount());
+        // in id order, so that ties rank alike however the list was split
+        for (int id : partial.ids(2)) {
+          String name = symbols.get(id);
+          if (filter.test(name)) {
+            result.offer(new Tuple<>(name, partial.get(id)));
+          }
+        }
+        return result.toList();
+      }
+    };
+  }
+
+  /**
+   * A scan selecting, for each year from 'from' to 'to', the movie matching
+   * 'filter' that ranks first in 'order'; of equal movies, the first one in
+   * the list.
+   */
+  private static MovieScan<Movie[], List<Movie>> bestPerYearScan(int from,
+      int to, Predicate<Movie> filter, Comparator<Movie> order) {
+    return new MovieScan<Movie[], List<Movie>>() {
+      @Override
+      public Movie[] newPartial() {
+        return new Movie[to - from + 1];
+      }
+
+      @Override
+      public void accept(Movie[] partial, Movie movie) {
+        int year = movie.getYearNumber();
+        if (year >= from && year <= to && filter.test(movie)) {
+          Movie best = partial[year - from];
+          if (best == null || order.compare(movie, best) < 0) {
+            partial[year - from] = movie;
+          }
+        }
+      }
+
+      @Override
+      public Movie[] merge(Movie[] left, Movie[] right) {
+        for (int i = 0; i < left.length; i++) {
+          if (right[i] != null
+              && (left[i] == null || order.compare(right[i], left[i]) < 0)) {
+            left[i] = right[i];
+          }
+        }
+        return left;
+      }
+
+      @Override
+      public List<Movie> finish(Movie[] partial) {
+        List<Movie> result = new ArrayList<>();
+        for (Movie movie : partial) {
+          if (movie != null) {
+            result.add(movie);
+          }
+        }
+        return result;
+      }
+    };
   }
- 
 
   /**
    * All-rounder: Determine all movies in which the director stars as an actor
@@ -50,8 +247,85 @@ public class IMDBQueries {
    * @return top ten movies and the director, sorted by decreasing IMDB rating
    */
   public List<Tuple<Movie, String>> queryAllRounder(List<Movie> movies) {
-    // TODO Basic Query: insert code here
-    return new ArrayList<>();
+    return scanAll(movies, allRounderScan());
+  }
+
+  /**
+   * All-rounder, scanned in parallel by 'scanner'.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param scanner
+   *          the scanner running the query
+   * @return top ten movies and the director, sorted by decreasing IMDB rating
+   */
+  public List<Tuple<Movie, String>> queryAllRounder(List<Movie> movies,
+      ParallelScanner scanner) {
+    return scanner.scan(movies, allRounderScan());
+  }
+
+  /**
+   * All-rounder, answered by intersecting the movies each person directed
+   * with the movies the person acted in.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param roles
+   *          the person-role index of the movies
+   * @return top ten movies and the director, sorted by decreasing IMDB rating
+   */
+  public List<Tuple<Movie, String>> queryAllRounder(List<Movie> movies,
+      PersonRoleIndex roles) {
+    // (movie, position of the director in the movie), offered in list order
+    // so that ties rank as in a scan
+    long[] matches = new long[16];
+    int n = 0;
+    for (int person = 0; person < roles.personLimit(); person++) {
+      if (roles.count(person, PersonRoleIndex.Role.DIRECTOR) == 0) {
+        continue;
+      }
+      for (int id : roles.movies(person, PersonRoleIndex.Role.DIRECTOR,
+          PersonRoleIndex.Role.CAST)) {
+        int[] directors = movies.get(id).getDirectorIds();
+        for (int i = 0; i < directors.length; i++) {
+          if (directors[i] == person) {
+            if (n == matches.length) {
+              matches = Arrays.copyOf(matches, n * 2);
+            }
+            matches[n++] = (long) id << 32 | i;
+          }
+        }
+      }
+    }
+    Arrays.sort(matches, 0, n);
+
+    SymbolTable symbols = SymbolTable.global();
+    TopK<Tuple<Movie, String>> result = new TopK<>(TOP_TEN, byRating());
+    for (int m = 0; m < n; m++) {
+      long match = matches[m];
+      Movie movie = movies.get((int) (match >>> 32));
+      result.offer(new Tuple<>(movie,
+          symbols.get(movie.getDirectorIds()[(int) match])));
+    }
+    return result.toList();
+  }
+
+  /**
+   * 
+   * @return All-rounder as a scan, which the sequential and parallel queries
+   *         and a shared batch pass run
+   */
+  MovieScan<?, List<Tuple<Movie, String>>> allRounderScan() {
+    SymbolTable symbols = SymbolTable.global();
+    return topTenScan(byRating(),
+        (TopK<Tuple<Movie, String>> result, Movie movie) -> {
+          int[] cast = movie.getCastIds();
+          for (int director : movie.getDirectorIds()) {
+            if (SymbolTable.contains(cast, director)) {
+              result.offer(new Tuple<>(movie, symbols.get(director)));
+            }
+          }
+        });
   }
 
   /**
@@ -66,24 +340,103 @@ public class IMDBQueries {
    *         monetary loss, which is also returned
    */
   public List<Tuple<Movie, Long>> queryUnderTheRadar(List<Movie> movies) {
-	  List<Tuple<Movie,Long>> result = new ArrayList<Tuple<Movie,Long>>();
-	 for (Movie movie: movies){
-		try{
-			if(movie.getRatingValue().charAt(0)>=56 && !movie.getRatingValue().equals("8.0")){ //char '0' equals int 48
-				if(movie.getCountryList().contains("USA")){
-					if(movie.getRatingCount().length()>=5){				
-						long budget = Long.parseLong(movie.getBudget().replace(",", "").substring(1));
-						long gross = Long.parseLong(movie.getGross().replace(",", "").substring(1));
-						result.add(new Tuple<Movie, Long>(movie, budget-gross));
-					}
-				}	
-			}
-		}catch(StringIndexOutOfBoundsException e){}
-	}
-	result.sort(Comparator.comparing(tuple -> tuple.second));
-	result = result.subList(0, 9);
-	
-    return result;
+    return scanAll(movies, underTheRadarScan());
+  }
+
+  /**
+   * Under the Radar, evaluated on the columns of 'table'.
+   *
+   * @param table
+   *          the movies which are to be queried
+   * @return top ten highest rated US-American movie until 2015, sorted by
+   *         monetary loss, which is also returned
+   */
+  public List<Tuple<Movie, Long>> queryUnderTheRadar(MovieTable table) {
+    int usa = table.getCountries().getDictionary().lookup("USA");
+    MovieTable.ListColumn countries = table.getCountries();
+    float[] rating = table.getRating();
+    int[] voteCount = table.getVoteCount();
+    int[] year = table.getYear();
+    long[] budget = table.getBudget();
+    long[] gross = table.getGross();
+    int[] budgetCurrency = table.getBudgetCurrency();
+    int[] grossCurrency = table.getGrossCurrency();
+
+    TopK<Tuple<Movie, Long>> result = new TopK<>(TOP_TEN, byLoss());
+    for (int i = 0; i < table.size(); i++) {
+      if (rating[i] > 8.0f && voteCount[i] >= 1000 && year[i] <= 2015
+          && budget[i] > 0 && gross[i] > 0
+          && budgetCurrency[i] == grossCurrency[i]
+          && countries.contains(i, usa)) {
+        result.offer(new Tuple<>(table.getMovie(i), budget[i] - gross[i]));
+      }
+    }
+    return result.toList();
+  }
+
+  /**
+   * Under the Radar, evaluated on the columns of 'table' for the US-American
+   * movies until 2015 selected by 'bitmaps'.
+   *
+   * @param table
+   *          the movies which are to be queried
+   * @param bitmaps
+   *          the bitmap index of the movies
+   * @return top ten highest rated US-American movie until 2015, sorted by
+   *         monetary loss, which is also returned
+   */
+  public List<Tuple<Movie, Long>> queryUnderTheRadar(MovieTable table,
+      MovieBitmapIndex bitmaps) {
+    float[] rating = table.getRating();
+    int[] voteCount = table.getVoteCount();
+    long[] budget = table.getBudget();
+    long[] gross = table.getGross();
+    int[] budgetCurrency = table.getBudgetCurrency();
+    int[] grossCurrency = table.getGrossCurrency();
+
+    TopK<Tuple<Movie, Long>> result = new TopK<>(TOP_TEN, byLoss());
+    for (int i : bitmaps.country("USA").and(bitmaps.years(0, 2015)).toArray()) {
+      if (rating[i] > 8.0f && voteCount[i] >= 1000 && budget[i] > 0
+          && gross[i] > 0 && budgetCurrency[i] == grossCurrency[i]) {
+        result.offer(new Tuple<>(table.getMovie(i), budget[i] - gross[i]));
+      }
+    }
+    return result.toList();
+  }
+
+  /**
+   * Under the Radar, scanned in parallel by 'scanner'.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param scanner
+   *          the scanner running the query
+   * @return top ten highest rated US-American movie until 2015, sorted by
+   *         monetary loss, which is also returned
+   */
+  public List<Tuple<Movie, Long>> queryUnderTheRadar(List<Movie> movies,
+      ParallelScanner scanner) {
+    return scanner.scan(movies, underTheRadarScan());
+  }
+
+  /**
+   * 
+   * @return Under the Radar as a scan, which the sequential and parallel
+   *         queries and a shared batch pass run
+   */
+  MovieScan<?, List<Tuple<Movie, Long>>> underTheRadarScan() {
+    int usa = SymbolTable.global().lookup("USA");
+    return topTenScan(byLoss(),
+        (TopK<Tuple<Movie, Long>> result, Movie movie) -> {
+          if (movie.getRating() > 8.0f && movie.getVoteCount() >= 1000
+              && movie.getYearNumber() <= 2015
+              && SymbolTable.contains(movie.getCountryIds(), usa)
+              && movie.getBudgetAmount() > 0 && movie.getGrossAmount() > 0
+              && movie.getBudgetCurrency().equals(movie.getGrossCurrency())) {
+            result.offer(new Tuple<>(movie,
+                movie.getBudgetAmount() - movie.getGrossAmount()));
+          }
+        });
   }
 
   /**
@@ -99,27 +452,86 @@ public class IMDBQueries {
    *         these words, which is also returned.
    */
   public List<Tuple<Movie, Integer>> queryPillarsOfStorytelling(List<Movie> movies) {
-	
-	  Map<String, Integer> res = new HashMap<Movie, Integer>();
-		 
-	  for(Movie mov: movies){
-		  
-			if(!res.containsKey(name)){res.put(name, 1);}
-		  	else{res.replace(name, res.get(name)+1);}
-	    		
-	  }
-	  
-	  List<Tuple<Movie, Integer>> result = new ArrayList<Tuple<String, Integer>>();
-	  for(String name: res.keySet()){
-		  if(res.get(name)>1){
-			  result.add(new Tuple<String,Integer>(name, res.get(name)));
-		  }
-	  }
-	  result.sort(Collections.reverseOrder(Comparator.comparing(tuple->tuple.second)));
-	  result = result.subList(0, 9);  
-	  
-    
-	  return result;
+    return scanAll(movies, pillarsOfStorytellingScan());
+  }
+
+  /**
+   * The Pillars of Storytelling, answered from the description index: only the
+   * movies containing both "kill" and "love" are visited.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param index
+   *          the description index of 'movies'
+   * @return top ten movies, which have the words "kill" and "love" as part of
+   *         their lowercase description, sorted by the number of appearances of
+   *         these words, which is also returned.
+   */
+  public List<Tuple<Movie, Integer>> queryPillarsOfStorytelling(
+      List<Movie> movies, DescriptionIndex index) {
+    int[] docs = DescriptionIndex.intersect(index.docsContaining("kill"),
+        index.docsContaining("love"));
+
+    TopK<Tuple<Movie, Integer>> result = new TopK<>(TOP_TEN, byCount());
+    for (int doc : docs) {
+      result.offer(new Tuple<>(movies.get(doc),
+          index.countOccurrences(doc, "kill")
+              + index.countOccurrences(doc, "love")));
+    }
+
+    return result.toList();
+  }
+
+  /**
+   * The Pillars of Storytelling, scanned in parallel by 'scanner'.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param scanner
+   *          the scanner running the query
+   * @return top ten movies, which have the words "kill" and "love" as part of
+   *         their lowercase description, sorted by the number of appearances of
+   *         these words, which is also returned.
+   */
+  public List<Tuple<Movie, Integer>> queryPillarsOfStorytelling(
+      List<Movie> movies, ParallelScanner scanner) {
+    return scanner.scan(movies, pillarsOfStorytellingScan());
+  }
+
+  /**
+   * 
+   * @return The Pillars of Storytelling as a scan, which the sequential and
+   *         parallel queries and a shared batch pass run
+   */
+  MovieScan<?, List<Tuple<Movie, Integer>>> pillarsOfStorytellingScan() {
+    return topTenScan(byCount(),
+        (TopK<Tuple<Movie, Integer>> result, Movie movie) -> {
+          String description = movie.getDescription() == null ? ""
+              : movie.getDescription().toLowerCase();
+          int kill = countOccurrences(description, "kill");
+          int love = countOccurrences(description, "love");
+          if (kill > 0 && love > 0) {
+            result.offer(new Tuple<>(movie, kill + love));
+          }
+        });
+  }
+
+  private static boolean containsIgnoreCase(String text, String word) {
+    for (int i = 0; i + word.length() <= text.length(); i++) {
+      if (text.regionMatches(true, i, word, 0, word.length())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int countOccurrences(String text, String word) {
+    int count = 0;
+    for (int i = text.indexOf(word); i >= 0; i = text.indexOf(word,
+        i + word.length())) {
+      count++;
+    }
+    return count;
   }
 
   /**
@@ -133,20 +545,90 @@ public class IMDBQueries {
    *         publication.
    */
   public List<Movie> queryRedPlanet(List<Movie> movies) {
-	
-	List<Movie> result = new ArrayList<Movie>();
-	for(Movie mov: movies){
-    	if(mov.getGenreList().contains("Sci-Fi")){
-    		if(mov.getDescription().contains("Mars")) {
-    			result.add(mov);
-    		}
-    	}
-    	result.sort(Comparator.comparing(Movie::getYear));	
-    }
-    
+    return scanAll(movies, redPlanetScan());
+  }
+
+  /**
+   * The Red Planet, answered from the description index: only the movies
+   * mentioning "Mars" are visited.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param index
+   *          the description index of 'movies'
+   * @return list of Sci-Fi movies involving Mars in ascending order of
+   *         publication.
+   */
+  public List<Movie> queryRedPlanet(List<Movie> movies,
+      DescriptionIndex index) {
+    int sciFi = SymbolTable.global().lookup("Sci-Fi");
+    List<Movie> result = new ArrayList<>();
+    for (int doc : index.docsContainingExact("Mars")) {
+      Movie mov = movies.get(doc);
+      if (SymbolTable.contains(mov.getGenreIds(), sciFi)) {
+        result.add(mov);
+      }
+    }
+    result.sort(Comparator.comparingInt(Movie::getYearNumber));
+
     return result;
   }
 
+  /**
+   * The Red Planet, answered from the description index and the Sci-Fi
+   * bitmap: only the Sci-Fi movies mentioning "Mars" are visited.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param index
+   *          the description index of 'movies'
+   * @param bitmaps
+   *          the bitmap index of 'movies'
+   * @return list of Sci-Fi movies involving Mars in ascending order of
+   *         publication.
+   */
+  public List<Movie> queryRedPlanet(List<Movie> movies, DescriptionIndex index,
+      MovieBitmapIndex bitmaps) {
+    CompactBitmap sciFi = bitmaps.genre("Sci-Fi");
+    List<Movie> result = new ArrayList<>();
+    for (int doc : index.docsContainingExact("Mars")) {
+      if (sciFi.contains(doc)) {
+        result.add(movies.get(doc));
+      }
+    }
+    result.sort(Comparator.comparingInt(Movie::getYearNumber));
+
+    return result;
+  }
+
+  /**
+   * The Red Planet, scanned in parallel by 'scanner'.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param scanner
+   *          the scanner running the query
+   * @return list of Sci-Fi movies involving Mars in ascending order of
+   *         publication.
+   */
+  public List<Movie> queryRedPlanet(List<Movie> movies,
+      ParallelScanner scanner) {
+    return scanner.scan(movies, redPlanetScan());
+  }
+
+  /**
+   * 
+   * @return The Red Planet as a scan, which the sequential and parallel
+   *         queries and a shared batch pass run
+   */
+  MovieScan<?, List<Movie>> redPlanetScan() {
+    int sciFi = SymbolTable.global().lookup("Sci-Fi");
+    return filterScan(movie -> SymbolTable.contains(movie.getGenreIds(), sciFi)
+        && movie.getDescription() != null
+        && movie.getDescription().contains("Mars"),
+        Comparator.comparingInt(Movie::getYearNumber));
+  }
+
   /**
    * Colossal Failure: Determine all US-American movies with a duration beyond 2
    * hours, a budget beyond 1 million and an IMDB rating below 5.0. Sort results
@@ -158,28 +640,94 @@ public class IMDBQueries {
    *         bad IMDB rating, sorted by ascending IMDB rating
    */
   public List<Movie> queryColossalFailure(List<Movie> movies) {
-	  List<Movie> result = new ArrayList();
-
-	for (Movie movie: movies){
-		try{	
-			if(movie.getRatingValue().charAt(0)<53){ //char '0' equals int 48
-				if((movie.getDuration().charAt(0)>=50 || movie.getDuration().charAt(1)!='h')){
-					if(movie.getCountryList().contains("USA")){
-						String budg = movie.getBudget();		
-						if(budg.indexOf(",") != budg.lastIndexOf(",") && budg.contains(",")){
-							result.add(movie);
-						}
-					}	
-
-				}
-			}
-		}catch(StringIndexOutOfBoundsException e){}
-	}	
-	result.sort(Comparator.comparing(Movie::getRatingValue));
-	
+    return scanAll(movies, colossalFailureScan());
+  }
+
+  /**
+   * Colossal Failure, evaluated on the columns of 'table'.
+   *
+   * @param table
+   *          the movies which are to be queried
+   * @return list of US-American movies with high duration, large budgets and a
+   *         bad IMDB rating, sorted by ascending IMDB rating
+   */
+  public List<Movie> queryColossalFailure(MovieTable table) {
+    int usa = table.getCountries().getDictionary().lookup("USA");
+    MovieTable.ListColumn countries = table.getCountries();
+    float[] rating = table.getRating();
+    int[] duration = table.getDuration();
+    long[] budget = table.getBudget();
+
+    List<Movie> result = new ArrayList<>();
+    for (int i = 0; i < table.size(); i++) {
+      if (rating[i] > 0 && rating[i] < 5.0f && duration[i] > 120
+          && budget[i] > 1000000 && countries.contains(i, usa)) {
+        result.add(table.getMovie(i));
+      }
+    }
+    result.sort(Comparator.comparingDouble(Movie::getRating));
+
+    return result;
+  }
+
+  /**
+   * Colossal Failure, evaluated on the columns of 'table' for the US-American
+   * movies selected by 'bitmaps'.
+   *
+   * @param table
+   *          the movies which are to be queried
+   * @param bitmaps
+   *          the bitmap index of the movies
+   * @return list of US-American movies with high duration, large budgets and a
+   *         bad IMDB rating, sorted by ascending IMDB rating
+   */
+  public List<Movie> queryColossalFailure(MovieTable table,
+      MovieBitmapIndex bitmaps) {
+    float[] rating = table.getRating();
+    int[] duration = table.getDuration();
+    long[] budget = table.getBudget();
+
+    List<Movie> result = new ArrayList<>();
+    for (int i : bitmaps.country("USA").toArray()) {
+      if (rating[i] > 0 && rating[i] < 5.0f && duration[i] > 120
+          && budget[i] > 1000000) {
+        result.add(table.getMovie(i));
+      }
+    }
+    result.sort(Comparator.comparingDouble(Movie::getRating));
+
     return result;
   }
 
+  /**
+   * Colossal Failure, scanned in parallel by 'scanner'.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param scanner
+   *          the scanner running the query
+   * @return list of US-American movies with high duration, large budgets and a
+   *         bad IMDB rating, sorted by ascending IMDB rating
+   */
+  public List<Movie> queryColossalFailure(List<Movie> movies,
+      ParallelScanner scanner) {
+    return scanner.scan(movies, colossalFailureScan());
+  }
+
+  /**
+   * 
+   * @return Colossal Failure as a scan, which the sequential and parallel
+   *         queries and a shared batch pass run
+   */
+  MovieScan<?, List<Movie>> colossalFailureScan() {
+    int usa = SymbolTable.global().lookup("USA");
+    return filterScan(movie -> movie.getRating() > 0
+        && movie.getRating() < 5.0f && movie.getDurationMinutes() > 120
+        && movie.getBudgetAmount() > 1000000
+        && SymbolTable.contains(movie.getCountryIds(), usa),
+        Comparator.comparingDouble(Movie::getRating));
+  }
+
   /**
    * Uncreative Writers: Determine the 10 most frequent character names of all
    * times ordered by frequency of occurrence. Filter any lowercase names
@@ -191,30 +739,48 @@ public class IMDBQueries {
    *         sorted in decreasing order of frequency
    */
   public List<Tuple<String, Integer>> queryUncreativeWriters(List<Movie> movies) {
+    return scanAll(movies, uncreativeWritersScan());
+  }
 
-	  Map<String, Integer> res = new HashMap<String, Integer>();
-		 
-	  for(Movie mov: movies){
-		  for(String name: mov.getCharacterList()){
-	    		String name1 = name.toLowerCase();
-	    		if(!name1.contains("himself") && !name1.contains("herself") && !name1.contains("doctor") && !name1.equals("") && !name1.contains("voice")){
-	    			if(!res.containsKey(name)){res.put(name, 1);}
-	  			  	else{res.replace(name, res.get(name)+1);}
-	    		}
-	    	}
-	  }
-	  
-	  List<Tuple<String, Integer>> result = new ArrayList<Tuple<String, Integer>>();
-	  for(String name: res.keySet()){
-		  if(res.get(name)>1){
-			  result.add(new Tuple<String,Integer>(name, res.get(name)));
-		  }
-	  }
-	  result.sort(Collections.reverseOrder(Comparator.comparing(tuple->tuple.second)));
-	  result = result.subList(0, 9);  
-	  
-    
-    return result;
+
+  /**
+   * Uncreative Writers, scanned in parallel by 'scanner'. Each part of the
+   * movies is counted into its own sparse counter, and the counters are
+   * merged.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param scanner
+   *          the scanner running the query
+   * @return the top 10 character names and their frequency of occurrence;
+   *         sorted in decreasing order of frequency
+   */
+  public List<Tuple<String, Integer>> queryUncreativeWriters(List<Movie> movies,
+      ParallelScanner scanner) {
+    return scanner.scan(movies, uncreativeWritersScan());
+  }
+
+  /**
+   * 
+   * @return Uncreative Writers as a scan, which the sequential and parallel
+   *         queries and a shared batch pass run
+   */
+  MovieScan<?, List<Tuple<String, Integer>>> uncreativeWritersScan() {
+    return countScan(Movie::getCharacterIds, IMDBQueries::isCreative);
+  }
+
+  /**
+   * 
+   * @param name
+   *          a character name
+   * @return false if the name is empty or contains "himself", "herself",
+   *         "doctor" or "voice" in any case
+   */
+  private static boolean isCreative(String name) {
+    return !name.isEmpty() && !containsIgnoreCase(name, "himself")
+        && !containsIgnoreCase(name, "herself")
+        && !containsIgnoreCase(name, "doctor")
+        && !containsIgnoreCase(name, "voice");
   }
 
 
@@ -228,25 +794,32 @@ public class IMDBQueries {
    *         sorted by the latter.
    */
   public List<Tuple<String, Integer>> queryWorkHorse(List<Movie> movies) {
-	  Map<String, Integer> res = new HashMap<String, Integer>();
-	 
-	  for(Movie mov: movies){
-		  for(String name: mov.getCastList()){
-			  if(!res.containsKey(name)){res.put(name, 1);}
-			  else{res.replace(name, res.get(name)+1);}
-		  }
-	  }
-	  
-	  List<Tuple<String, Integer>> result = new ArrayList<Tuple<String, Integer>>();
-	  for(String name: res.keySet()){
-		  if(res.get(name)>1){
-			  result.add(new Tuple<String,Integer>(name, res.get(name)));
-		  }
-	  }
-	  result.sort(Collections.reverseOrder(Comparator.comparing(tuple->tuple.second)));
-	  result = result.subList(0, 9);
-	  
-    return  result;
+    return scanAll(movies, workHorseScan());
+  }
+
+  /**
+   * Workhorse, scanned in parallel by 'scanner'. Each part of the movies is
+   * counted into its own sparse counter, and the counters are merged.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param scanner
+   *          the scanner running the query
+   * @return the top ten actors and the number of movies they had a role in,
+   *         sorted by the latter.
+   */
+  public List<Tuple<String, Integer>> queryWorkHorse(List<Movie> movies,
+      ParallelScanner scanner) {
+    return scanner.scan(movies, workHorseScan());
+  }
+
+  /**
+   * 
+   * @return Workhorse as a scan, which the sequential and parallel queries
+   *         and a shared batch pass run
+   */
+  MovieScan<?, List<Tuple<String, Integer>>> workHorseScan() {
+    return countScan(Movie::getCastIds, name -> true);
   }
 
   /**
@@ -259,8 +832,45 @@ public class IMDBQueries {
    * @return best movies by year, starting from 1990 until 2010.
    */
   public List<Movie> queryMustSee(List<Movie> movies) {
-	 
-    return new ArrayList<>();
+    return scanAll(movies, mustSeeScan());
+  }
+
+  /**
+   * Must See, scanned in parallel by 'scanner'.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param scanner
+   *          the scanner running the query
+   * @return best movies by year, starting from 1990 until 2010.
+   */
+  public List<Movie> queryMustSee(List<Movie> movies, ParallelScanner scanner) {
+    return scanner.scan(movies, mustSeeScan());
+  }
+
+  /**
+   * Must See, as a declarative query answered by 'planner'.
+   *
+   * @param planner
+   *          the planner over the list of movies which is to be queried
+   * @return best movies by year, starting from 1990 until 2010.
+   */
+  public List<Movie> queryMustSee(QueryPlanner planner) {
+    return planner.execute(new MovieQuery()
+        .range(MovieQuery.Field.YEAR, 1990, 2010)
+        .greaterThan(MovieQuery.Field.VOTES, 10000)
+        .groupBy(MovieQuery.Field.YEAR)
+        .orderBy(MovieQuery.Field.RATING, true));
+  }
+
+  /**
+   * 
+   * @return Must See as a scan, which the sequential and parallel queries and
+   *         a shared batch pass run
+   */
+  MovieScan<?, List<Movie>> mustSeeScan() {
+    return bestPerYearScan(1990, 2010, movie -> movie.getVoteCount() > 10000,
+        Comparator.comparingDouble(Movie::getRating).reversed());
   }
 
   /**
@@ -273,34 +883,31 @@ public class IMDBQueries {
    * @return worst movies by year, starting from 1990 till (including) 2010.
    */
   public List<Movie> queryRottenTomatoes(List<Movie> movies) {
-    Map<String, Movie> res = new HashMap<String, Movie>();
-    res.put("1990",null);res.put("1991",null);res.put("1992",null);res.put("1993",null);res.put("1994",null);res.put("1995",null);res.put("1996",null);res.put("1997",null);res.put("1998",null);res.put("1999",null)
-    ;res.put("2000",null);res.put("2001",null);res.put("2002",null);res.put("2003",null);res.put("2004",null);res.put("2005",null);res.put("2006",null);res.put("2007",null);res.put("2008",null);res.put("2009",null)
-    ;res.put("2010",null);
-    
-    for(Movie mov:movies){
-    	
-    	if(res.containsKey(mov.getYear())){
-    			String year = mov.getYear();
-	    		if(mov.getRatingValue()!="0"){	
-	    			if(res.get(year)==null||mov.getRatingValue().compareTo(res.get(year).getRatingValue()) < 0){
-	    				res.put(year, mov);
-	    			}	
-	    		}
-    	}
-    	
-    }    
-    List<Movie> result = new ArrayList<Movie>();
-    for(String year: res.keySet()){
-    	if(!(res.get(year)==null)){
-    		result.add(res.get(year));
-    	}
-    }
-    
-
-    result.sort(Comparator.comparing(Movie::getYear));
-    
-    return result;
+    return scanAll(movies, rottenTomatoesScan());
+  }
+
+  /**
+   * Rotten Tomatoes, scanned in parallel by 'scanner'.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param scanner
+   *          the scanner running the query
+   * @return worst movies by year, starting from 1990 till (including) 2010.
+   */
+  public List<Movie> queryRottenTomatoes(List<Movie> movies,
+      ParallelScanner scanner) {
+    return scanner.scan(movies, rottenTomatoesScan());
+  }
+
+  /**
+   * 
+   * @return Rotten Tomatoes as a scan, which the sequential and parallel
+   *         queries and a shared batch pass run
+   */
+  MovieScan<?, List<Movie>> rottenTomatoesScan() {
+    return bestPerYearScan(1990, 2010, movie -> movie.getRating() > 0,
+        Comparator.comparingDouble(Movie::getRating));
   }
 
   /**
@@ -316,28 +923,169 @@ public class IMDBQueries {
    */
   public List<Tuple<Tuple<String, String>, Integer>> queryMagicCouple(
       List<Movie> movies) {
-    // TODO Impossibly Hard Query: insert code here
-    return new ArrayList<>();
+    return queryMagicCouple(movies, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Magic Couples, counted in parallel in the pool of 'scanner'.
+   *
+   * @param movies
+   *          the list of movies which is to be queried
+   * @param scanner
+   *          the scanner running the query
+   * @return report the top 10 pairs of actors and the number of movies they
+   *         feature together. Sort by number of movies.
+   */
+  public List<Tuple<Tuple<String, String>, Integer>> queryMagicCouple(
+      List<Movie> movies, ParallelScanner scanner) {
+    return queryMagicCouple(movies, scanner.getPool());
   }
 
+  private List<Tuple<Tuple<String, String>, Integer>> queryMagicCouple(
+      List<Movie> movies, ForkJoinPool pool) {
+    ActorPairCounter pairs = new ActorPairCounter(movies);
+
+    List<Tuple<Tuple<String, String>, Integer>> result = new ArrayList<>();
+    for (long[] entry : pairs.mostFrequentPairs(pool, TOP_TEN)) {
+      result.add(new Tuple<>(
+          new Tuple<>(pairs.first(entry[0]), pairs.second(entry[0])),
+          (int) entry[1]));
+    }
+    return result;
+  }
+
+
+  /**
+   * Load the movies from the snapshot in 'moviesDir' if it is current, or else
+   * from the JSON files or segments, and write a new snapshot of them. Movies
+   * from a snapshot are views of the mapped file, which decode their fields on
+   * access.
+   *
+   * @param moviesDir
+   *          the directory of the movies
+   * @return the movies
+   * @throws IOException
+   */
+  static List<Movie> loadMovies(File moviesDir) throws IOException {
+    File snapshot = new File(moviesDir, MovieSnapshot.FILE_NAME);
+    // taken before reading, so a file changed while reading makes the
+    // snapshot stale
+    long sources = MovieSnapshot.fingerprint(moviesDir);
+    if (MovieSnapshot.isCurrent(snapshot, moviesDir)) {
+      try {
+        return MovieSnapshot.open(snapshot).getMovieViews();
+      } catch (IOException e) {
+        System.err.println("Ignoring snapshot: " + e.getMessage());
+      }
+    }
+
+    int parallelism = Runtime.getRuntime().availableProcessors();
+    List<Movie> movies = MovieReader.hasSegments(moviesDir)
+        ? MovieReader.readSegmentsFrom(moviesDir, parallelism)
+        : MovieReader.readMoviesFrom(moviesDir, parallelism);
+    try {
+      MovieSnapshot.write(movies, snapshot, sources);
+    } catch (IOException e) {
+      System.err.println("Could not write snapshot: " + e.getMessage());
+    }
+    return movies;
+  }
 
   public static void main(String argv[]) throws IOException {
     String moviesPath = "./data/movies/";
+    boolean watch = false;
 
-    if (argv.length == 1) {
+    if (argv.length == 1 || argv.length == 2) {
       moviesPath = argv[0];
-    } else if (argv.length != 0) {
-      System.out.println("Call with: IMDBQueries.jar <moviesPath>");
+      watch = argv.length == 2 && argv[1].equals("watch");
+    }
+    if (argv.length > 2 || argv.length == 2 && !watch) {
+      System.out.println("Call with: IMDBQueries.jar <moviesPath> [watch]");
       System.exit(0);
     }
 
-    List<Movie> movies = MovieReader.readMoviesFrom(new File(moviesPath));
+    File moviesDir = new File(moviesPath);
+    if (!watch) {
+      List<Movie> movies = loadMovies(moviesDir);
+      runQueries(movies, new DescriptionIndex(movies),
+          new MovieBitmapIndex(movies), new PersonRoleIndex(movies));
+      return;
+    }
+
+    // answer the queries again whenever the spider adds or rewrites movies
+    if (MovieReader.hasSegments(moviesDir)) {
+      System.out.println("Cannot watch " + moviesDir + ": the loader follows"
+          + " i.json files, not movies-*.jsonl segments");
+      System.exit(1);
+    }
+    try (IncrementalMovieLoader loader = new IncrementalMovieLoader(moviesDir,
+        ForkJoinPool.commonPool())) {
+      loader.refresh();
+      List<Movie> movies = loader.getMovies();
+      DescriptionIndex descriptions = new DescriptionIndex(movies);
+      MovieBitmapIndex bitmaps = new MovieBitmapIndex(movies);
+      PersonRoleIndex roles = new PersonRoleIndex(movies);
+      loader.addIndex(descriptions);
+      loader.addIndex(bitmaps);
+      loader.addIndex(roles);
+      while (true) {
+        runQueries(movies, descriptions, bitmaps, roles);
+        int changed = 0;
+        while (changed == 0) {
+          loader.awaitChange();
+          changed = loader.refresh();
+        }
+        System.out.println("Refreshed " + changed + " movies");
+        System.out.println("");
+      }
+    }
+  }
+
+  /**
+   * Answer all queries and print the results.
+   *
+   * @param movies
+   *          the movies
+   * @param descriptions
+   *          the description index of the movies
+   * @param bitmaps
+   *          the bitmap index of the movies
+   * @param roles
+   *          the person-role index of the movies
+   */
+  private static void runQueries(List<Movie> movies,
+      DescriptionIndex descriptions, MovieBitmapIndex bitmaps,
+      PersonRoleIndex roles) {
+    // the table is a packed copy of the columns, which is rebuilt rather
+    // than updated
+    MovieTable table = new MovieTable(movies);
+    ParallelScanner scanner = new ParallelScanner();
+    QueryPlanner planner = new QueryPlanner(movies, bitmaps, descriptions);
+
+    // the queries without an index share a single pass over the movies
+    IMDBQueries batched = new IMDBQueries();
+    BatchQueryExecutor batch = new BatchQueryExecutor();
+    BatchQueryExecutor.Result<List<Tuple<String, Integer>>> uncreativeWriters =
+        batch.register(batched.uncreativeWritersScan());
+    BatchQueryExecutor.Result<List<Tuple<String, Integer>>> workHorse = batch
+        .register(batched.workHorseScan());
+    BatchQueryExecutor.Result<List<Movie>> rottenTomatoes = batch
+        .register(batched.rottenTomatoesScan());
+    {
+      long time = System.currentTimeMillis();
+      batch.execute(movies, scanner);
+      System.out.println("Shared scan of Uncreative writers, Workhorse and"
+          + " Rotten tomatoes");
+      System.out.println("Time:" + (System.currentTimeMillis() - time));
+    }
+    System.out.println("");
 
     System.out.println("All-rounder");
     {
       IMDBQueries queries = new IMDBQueries();
       long time = System.currentTimeMillis();
-      List<Tuple<Movie, String>> result = queries.queryAllRounder(movies);
+      List<Tuple<Movie, String>> result = queries.queryAllRounder(movies,
+          roles);
       System.out.println("Time:" + (System.currentTimeMillis() - time));
 
       if (result != null && !result.isEmpty() && result.size() == 10) {
@@ -355,7 +1103,8 @@ public class IMDBQueries {
     {
       IMDBQueries queries = new IMDBQueries();
       long time = System.currentTimeMillis();
-      List<Tuple<Movie, Long>> result = queries.queryUnderTheRadar(movies);
+      List<Tuple<Movie, Long>> result = queries.queryUnderTheRadar(table,
+          bitmaps);
       System.out.println("Time:" + (System.currentTimeMillis() - time));
 
       if (result != null && !result.isEmpty() && result.size() <= 10) {
@@ -375,7 +1124,7 @@ public class IMDBQueries {
       IMDBQueries queries = new IMDBQueries();
       long time = System.currentTimeMillis();
       List<Tuple<Movie, Integer>> result = queries
-          .queryPillarsOfStorytelling(movies);
+          .queryPillarsOfStorytelling(movies, descriptions);
       System.out.println("Time:" + (System.currentTimeMillis() - time));
 
       if (result != null && !result.isEmpty() && result.size() <= 10) {
@@ -393,7 +1142,8 @@ public class IMDBQueries {
     {
       IMDBQueries queries = new IMDBQueries();
       long time = System.currentTimeMillis();
-      List<Movie> result = queries.queryRedPlanet(movies);
+      List<Movie> result = queries.queryRedPlanet(movies, descriptions,
+          bitmaps);
       System.out.println("Time:" + (System.currentTimeMillis() - time));
 
       if (result != null && !result.isEmpty()) {
@@ -410,7 +1160,7 @@ public class IMDBQueries {
     {
       IMDBQueries queries = new IMDBQueries();
       long time = System.currentTimeMillis();
-      List<Movie> result = queries.queryColossalFailure(movies);
+      List<Movie> result = queries.queryColossalFailure(table, bitmaps);
       System.out.println("Time:" + (System.currentTimeMillis() - time));
 
       if (result != null && !result.isEmpty()) {
@@ -426,11 +1176,7 @@ public class IMDBQueries {
 
     System.out.println("Uncreative writers");
     {
-      IMDBQueries queries = new IMDBQueries();
-      long time = System.currentTimeMillis();
-      List<Tuple<String, Integer>> result = queries
-          .queryUncreativeWriters(movies);
-      System.out.println("Time:" + (System.currentTimeMillis() - time));
+      List<Tuple<String, Integer>> result = uncreativeWriters.get();
 
       if (result != null && !result.isEmpty() && result.size() <= 10) {
         for (Tuple<String, Integer> tuple : result) {
@@ -444,10 +1190,7 @@ public class IMDBQueries {
 
     System.out.println("Workhorse");
     {
-      IMDBQueries queries = new IMDBQueries();
-      long time = System.currentTimeMillis();
-      List<Tuple<String, Integer>> result = queries.queryWorkHorse(movies);
-      System.out.println("Time:" + (System.currentTimeMillis() - time));
+      List<Tuple<String, Integer>> result = workHorse.get();
 
       if (result != null && !result.isEmpty() && result.size() <= 10) {
         for (Tuple<String, Integer> actor : result) {
@@ -463,7 +1206,7 @@ public class IMDBQueries {
     {
       IMDBQueries queries = new IMDBQueries();
       long time = System.currentTimeMillis();
-      List<Movie> result = queries.queryMustSee(movies);
+      List<Movie> result = queries.queryMustSee(planner);
       System.out.println("Time:" + (System.currentTimeMillis() - time));
 
       if (result != null && !result.isEmpty() && !result.isEmpty()) {
@@ -479,10 +1222,7 @@ public class IMDBQueries {
 
     System.out.println("Rotten tomatoes");
     {
-      IMDBQueries queries = new IMDBQueries();
-      long time = System.currentTimeMillis();
-      List<Movie> result = queries.queryRottenTomatoes(movies);
-      System.out.println("Time:" + (System.currentTimeMillis() - time));
+      List<Movie> result = rottenTomatoes.get();
 
       if (result != null && !result.isEmpty() && !result.isEmpty()) {
         for (Movie m : result) {
@@ -500,7 +1240,7 @@ public class IMDBQueries {
       IMDBQueries queries = new IMDBQueries();
       long time = System.currentTimeMillis();
       List<Tuple<Tuple<String, String>, Integer>> result = queries
-          .queryMagicCouple(movies);
+          .queryMagicCouple(movies, scanner);
       System.out.println("Time:" + (System.currentTimeMillis() - time));
 
       if (result != null && !result.isEmpty()) {
@@ -515,4 +1255,4 @@ public class IMDBQueries {
 
     }
   }
-}
+}
@@ -6,12 +6,12 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.SocketTimeoutException;
 import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.json.Json;
 import javax.json.JsonArray;
-import javax.json.JsonArrayBuilder;
-import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 import javax.json.JsonString;
 import javax.json.JsonWriter;
@@ -20,12 +20,63 @@ import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.nodes.TextNode;
-import org.jsoup.select.Elements;
 
 public class IMDBSpider {
 
+	/**
+	 * The name of the crawl journal in the output directory.
+	 */
+	static final String JOURNAL = "crawl.journal";
+
+	private final CrawlScheduler scheduler;
+	private final PageCache cache;
+	private final TitlePageExtractor extractor;
+	private long recrawlAfterMillis = Long.MAX_VALUE;
+	private long segmentBytes = 0;
+	private boolean gzipSegments = false;
+
 	public IMDBSpider() {
+		this(new CrawlScheduler(), null, new TitlePageExtractor(false));
+	}
+
+	/**
+	 * @param scheduler
+	 *            the scheduler pacing the requests to IMDB
+	 * @param cache
+	 *            the cache for search and title pages, or null to always fetch
+	 *            them
+	 * @param extractor
+	 *            the extractor for title pages
+	 */
+	public IMDBSpider(CrawlScheduler scheduler, PageCache cache, TitlePageExtractor extractor) {
+		this.scheduler = scheduler;
+		this.cache = cache;
+		this.extractor = extractor;
+	}
+
+	/**
+	 * @param recrawlAfterMillis
+	 *            the age after which a successfully fetched title is fetched
+	 *            again by a restarted crawl; never by default
+	 */
+	public void setRecrawlAfter(long recrawlAfterMillis) {
+		this.recrawlAfterMillis = recrawlAfterMillis;
+	}
+
+	/**
+	 * Append the movies to JSON Lines segments in the output directory instead
+	 * of writing one 'i.json' per movie, see {@link MovieSegmentWriter}.
+	 * Titles that were given up are not written to a segment.
+	 *
+	 * @param maxBytes
+	 *            the size after which a segment is closed, or 0 to write one
+	 *            file per movie
+	 * @param gzip
+	 *            true to compress the segments
+	 */
+	public void setSegments(long maxBytes, boolean gzip) {
+		this.segmentBytes = maxBytes;
+		this.gzipSegments = gzip;
 	}
 
 	/**
@@ -50,6 +101,60 @@ public class IMDBSpider {
 	 * @throws IOException
 	 */
 	public void fetchIMDBMovies(String movieListJSON, String outputDir) throws IOException {
+		fetchIMDBMovies(movieListJSON, outputDir, 1);
+	}
+
+	/**
+	 * Like {@link #fetchIMDBMovies(String, String)}, but fetches up to
+	 * 'concurrency' search and title pages at the same time, and extracts the
+	 * metadata on one thread per processor.
+	 *
+	 * @param movieListJSON
+	 *            JSON file containing movie titles
+	 * @param outputDir
+	 *            output directory for JSON files with metadata of movies.
+	 * @param concurrency
+	 *            the maximum number of titles fetched at the same time
+	 * @throws IOException
+	 */
+	public void fetchIMDBMovies(String movieListJSON, String outputDir, int concurrency) throws IOException {
+		fetchIMDBMovies(movieListJSON, outputDir, concurrency, concurrency, Runtime.getRuntime().availableProcessors(), 1);
+	}
+
+	/**
+	 * Crawl the titles in a pipeline of four stages, connected by bounded
+	 * queues: fetching the search page, fetching the title page, extracting the
+	 * metadata and writing 'i.json'. Each stage runs on its own number of
+	 * threads, so network waits and DOM extraction overlap. Each title is still
+	 * retried as in the sequential crawl and written to 'i.json' by its index
+	 * in the list.
+	 *
+	 * Each written file is recorded in the journal 'outputDir/crawl.journal'.
+	 * A restarted crawl skips the titles that were fetched successfully, and
+	 * fetches failed and stale titles, and indexes whose title changed in the
+	 * list, again.
+	 *
+	 * If segments are enabled with {@link #setSegments(long, boolean)}, the
+	 * movies are appended to JSON Lines segments instead of 'i.json' files.
+	 * Titles an earlier crawl wrote as 'i.json' are not crawled again; the
+	 * readers load those files together with the segments.
+	 *
+	 * @param movieListJSON
+	 *            JSON file containing movie titles
+	 * @param outputDir
+	 *            output directory for JSON files with metadata of movies.
+	 * @param searchThreads
+	 *            the number of search pages fetched at the same time
+	 * @param titleThreads
+	 *            the number of title pages fetched at the same time
+	 * @param extractThreads
+	 *            the number of threads extracting metadata
+	 * @param writeThreads
+	 *            the number of threads writing JSON files
+	 * @throws IOException
+	 */
+	public void fetchIMDBMovies(String movieListJSON, String outputDir, int searchThreads, int titleThreads,
+			int extractThreads, int writeThreads) throws IOException {
 
 		JsonArray movieList;
 
@@ -60,230 +165,188 @@ public class IMDBSpider {
 			}
 		}
 
-		for (int i = 0; i < movieList.size(); i++) {
-			
-			JsonString name = movieList.getJsonObject(i).getJsonString("movie_name");
-			String movName = name.toString();
-			JsonArray movie = Json.createArrayBuilder().build();
-			int socket = 0;
-			int http = 0;
-			
-			while(socket < 2 && http < 2){					//keep track of exceptions: if any of the exceptions occured twice, don't try again -> movie stays empty JsonArray
-				try {
-					movie = titleToJsonArray(movName);
-					socket = 2;
-					http = 2;
-				} catch (SocketTimeoutException ste) {
-						System.out.println("SocketTimeoutException");
-						socket = socket +1;
-						
-				} catch (HttpStatusException hse) {			//in case of HttpStatusException, try again with normalized movie name (without accents)
-					System.out.println("HttpStatusException");
-					movName = Normalizer.normalize(movName, Normalizer.Form.NFD);
-					movName = movName.replaceAll("\\p{M}", "");
-					http = http +1;
+		MovieSegmentWriter segments = this.segmentBytes > 0
+				? new MovieSegmentWriter(new File(outputDir), this.segmentBytes, this.gzipSegments) : null;
+		try (CrawlJournal journal = new CrawlJournal(new File(outputDir, JOURNAL), this.recrawlAfterMillis)) {
+			List<CrawlItem> items = new ArrayList<>();
+			for (int i = 0; i < movieList.size(); i++) {
+				String title = movieList.getJsonObject(i).getJsonString("movie_name").toString();
+				if (!journal.isDone(i, title) || (segments == null && !outputFile(outputDir, i).exists())) {
+					items.add(new CrawlItem(i, title));
 				}
 			}
 
-		
-			try (OutputStreamWriter stream = new OutputStreamWriter(new FileOutputStream(new File(outputDir + "\\" + i+".json")), "UTF-8")) {
-				try (JsonWriter writer = Json.createWriter(stream)) {
-
-					writer.writeArray(movie);
-
-				}
+			int capacity = 2 * Math.max(Math.max(searchThreads, titleThreads), Math.max(extractThreads, writeThreads));
+			new Pipeline<CrawlItem>(capacity)
+					.stage("search", searchThreads, this::search)
+					.stage("title", titleThreads, this::fetchTitle)
+					.stage("extract", extractThreads, item -> {
+						if (item.page != null) {
+							item.movie = this.extractor.extract(item.page, item.url);
+							item.page = null;
+						}
+					})
+					.stage("write", writeThreads, item -> {
+						if (segments == null) {
+							writeMovie(item.movie == null ? Json.createArrayBuilder().build() : item.movie, outputDir, item.index);
+						} else if (item.movie != null) {
+							segments.write(item.index, item.movie);
+						}
+						journal.record(item.index, item.listTitle, item.movie != null);
+					})
+					.run(items);
+		} finally {
+			if (segments != null) {
+				segments.close();
 			}
-
 		}
 
 	}
-	
 
-	private static JsonArray titleToJsonArray(String title) throws IOException, SocketTimeoutException, HttpStatusException {
-
-		JsonArrayBuilder movieA = Json.createArrayBuilder();
-		JsonObjectBuilder movieOB = Json.createObjectBuilder();
-		String _url;
-		
-		Document searchResults = Jsoup.connect("http://akas.imdb.com/find?q=" + title + "&s=tt&ttype=ft").timeout(10*1000).get();
-		
-		try {
-			Element resultCell = searchResults.select(".findList").select("td.result_text").first();
-			_url = resultCell.select("a").first().attr("abs:href");
-			movieOB.add("url", _url);
-		
-		} catch (NullPointerException e) {
-//			System.out.println(title);
-			JsonArray movie = movieA.build();
-			return movie; 
+	/**
+	 * A title on its way through the crawl pipeline.
+	 */
+	private static class CrawlItem {
+		final int index;
+		final String listTitle;	// as in the title list, for the journal
+		String title;			// as searched, normalized after HTTP errors
+		String url;			// of the title page, null if not searched or not found
+		Document page;		// the title page, until it is extracted
+		JsonArray movie;	// the result, empty if the title was not found, null if it could not be fetched
+		int socket;			// keep track of exceptions: if any of the exceptions occured twice, don't try again -> movie stays null
+		int http;
+
+		CrawlItem(int index, String title) {
+			this.index = index;
+			this.listTitle = title;
+			this.title = title;
 		}
 
-		Document movieSite = Jsoup.connect(_url).timeout(10*1000).get(); // open movie site via extracted direct link
-
-		
-		
-		// TITLE, YEAR
-		String _title = "";
-		String _year = "";
-		try {
-			String fullTitle = movieSite.title();
-			_title = fullTitle.substring(0, fullTitle.length() - 14);
-			_year = fullTitle.substring(fullTitle.length() - 12, fullTitle.length() - 8);	
-		} catch (NullPointerException e) {
-//			System.out.println(title + "  title/year");
-		}
-		movieOB.add("title", _title);
-		movieOB.add("year", _year);
-		
-		
-		
-		// GENRE_LIST
-		JsonArrayBuilder _genres = Json.createArrayBuilder();
-		try {
-			Elements genres = movieSite.select("div[itemprop='genre']").select("a"); 
-			for (Element el : genres) {
-				_genres.add(el.text()); // extract link/genre names
-			}
-		} catch (NullPointerException e) {
-//			System.out.println(title + "  genreList");
+		boolean givenUp() {
+			return this.socket >= 2 || this.http >= 2;
 		}
-		movieOB.add("genreList", _genres.build());
+	}
 
-		
-		
-		// COUNTRY_LIST		
-		JsonArrayBuilder _countries = Json.createArrayBuilder();
-		try {
-			Elements countries = movieSite.select("div.txt-block:contains(Country:)").select("a");
-			for (Element el : countries) {
-				_countries.add(el.text()); // extract link/country names
+	/**
+	 * Search stage: find the URL of the title page.
+	 */
+	private void search(CrawlItem item) throws IOException {
+		while (!item.givenUp()) {
+			try {
+				item.url = searchTitleUrl(item.title);
+				if (item.url == null) {
+					item.movie = Json.createArrayBuilder().build();
+				}
+				return;
+			} catch (PageCache.NotCachedException nce) {
+				// replaying offline: the title could not be fetched, and retrying cannot help
+				return;
+			} catch (SocketTimeoutException ste) {
+				timedOut(item);
+			} catch (HttpStatusException hse) {
+				httpError(item);
 			}
-		} catch (NullPointerException e) {
-//			System.out.println(title + "  countryList");
 		}
-		movieOB.add("countryList", _countries.build());
+	}
 
-		
-		
-		// DESCRIPTION
-		String _description = "";
-		try {
-			_description = movieSite.select("div.inline[itemprop=description]").first().text();
-		} catch (NullPointerException e) {
-			//System.out.println(title + "  description");
+	/**
+	 * Title stage: fetch the title page, if the title was found.
+	 */
+	private void fetchTitle(CrawlItem item) throws IOException {
+		while (item.url != null && !item.givenUp()) {
+			try {
+				item.page = fetchPage(item.url); // open movie site via extracted direct link
+				return;
+			} catch (PageCache.NotCachedException nce) {
+				return;
+			} catch (SocketTimeoutException ste) {
+				timedOut(item);
+			} catch (HttpStatusException hse) {
+				httpError(item);
+			}
 		}
-		movieOB.add("description", _description);
+	}
 
-		
-		
-		// BUDGET
-		String _budget = "";
-		try {
-			List<TextNode> bud = movieSite.select("div.txt-block:contains(Budget:)").first().textNodes(); 
-			_budget = bud.get(1).toString().trim();
-		} catch (NullPointerException e) {
-			//System.out.println(title + "  budget");
+	private void timedOut(CrawlItem item) throws IOException {
+		System.out.println("SocketTimeoutException");
+		item.socket = item.socket + 1;
+		if (!item.givenUp()) {
+			this.scheduler.backoff(item.socket + item.http - 1);
 		}
-		movieOB.add("budget", _budget);
+	}
 
-		
-		
-		// GROSS
-		String _gross= "";
-		try {
-			List<TextNode> gro = movieSite.select("div.txt-block:contains(Gross:)").first().textNodes();
-			_gross = gro.get(1).toString().trim();
-		} catch (NullPointerException e) {
-			//System.outprintln(title + "  gross");
+	// in case of HttpStatusException, try again with normalized movie name (without accents)
+	private void httpError(CrawlItem item) throws IOException {
+		System.out.println("HttpStatusException");
+		item.title = Normalizer.normalize(item.title, Normalizer.Form.NFD);
+		item.title = item.title.replaceAll("\\p{M}", "");
+		item.http = item.http + 1;
+		if (!item.givenUp()) {
+			this.scheduler.backoff(item.socket + item.http - 1);
 		}
-		movieOB.add("gross", _gross);
+	}
 
-		
-		
-		// RATING_VALUE gives value*10
-		String _ratingValue = "";
-		try {
-			_ratingValue = movieSite.select(".ratingValue").select("[itemprop=ratingValue]").first().text();
-		} catch (NullPointerException e) {
-			//System.out.println(title + "  ratingValue");
-		}
-		movieOB.add("ratingValue", _ratingValue);
+	/**
+	 * Write a movie to 'outputDir\i.json'.
+	 */
+	private static void writeMovie(JsonArray movie, String outputDir, int i) throws IOException {
+		try (OutputStreamWriter stream = new OutputStreamWriter(new FileOutputStream(outputFile(outputDir, i)), "UTF-8")) {
+			try (JsonWriter writer = Json.createWriter(stream)) {
 
-		
-		
-		// RATING_VALUE
-		String _ratingCount = "";
-		try {
-			_ratingCount = movieSite.select("[itemprop=ratingCount]").first().text();
-		} catch (NullPointerException e) {
-			//System.out.println(title + "  ratingCount");
-		}
-		movieOB.add("ratingCount", _ratingCount);
+				writer.writeArray(movie);
 
-		
-		
-		// DURATION in minutes
-		String _duration ="";
-		try {
-			_duration = movieSite.select("time[itemprop=duration]").first().text().trim();
-		} catch (NullPointerException e) {
-			//System.out.println(title + "  duration");
+			}
 		}
-		movieOB.add("duration", _duration);
-
-		
-		
-		// CAST_LIST, CHARACTER_LIST, DIRECTOR_LIST
+	}
 
-		Element cclist = movieSite.select("table.cast_list").first();
-		Elements directors = movieSite.select("div.credit_summary_item").first().select("[itemprop=name]");		
 
-		// CAST		
-		JsonArrayBuilder _cast = Json.createArrayBuilder();
-		try {
-			Elements cast = cclist.select("[itemprop=name]");
-			for (Element el : cast) {
-				_cast.add(el.text()); // extract cast names
-			}
-		} catch (NullPointerException e) {
-			//System.out.println(title + "  cast");
+	private static File outputFile(String outputDir, int i) {
+		return new File(outputDir + "\\" + i+".json");
+	}
 
-		}
-		movieOB.add("cast", _cast.build());
 
-		// CHARACTERS		
-		JsonArrayBuilder _characters = Json.createArrayBuilder();
-		try {
-			Elements characters = cclist.select(".character");
-			for (Element el : characters) {
-				_characters.add(el.text()); // extract character names
-			}
-		} catch (NullPointerException e) {
-			//System.out.println(title + "  characters");
-		}
-		movieOB.add("characters", _characters.build());
+	/**
+	 * Search IMDB for a title.
+	 *
+	 * @param title
+	 *            the movie title
+	 * @return the URL of the first result, or null if there is none
+	 * @throws IOException
+	 */
+	private String searchTitleUrl(String title) throws IOException, SocketTimeoutException, HttpStatusException {
 
+		Document searchResults = fetchPage("http://akas.imdb.com/find?q=" + title + "&s=tt&ttype=ft");
 		
-		
-		// DIRECTORS
-		JsonArrayBuilder _directors = Json.createArrayBuilder();
 		try {
-			for (Element el : directors) {
-				_directors.add(el.text()); // extract cast names
-			}
+			Element resultCell = searchResults.select(".findList").select("td.result_text").first();
+			return resultCell.select("a").first().attr("abs:href");
+		
 		} catch (NullPointerException e) {
-			//System.out.println(title + "  directors");
+//			System.out.println(title);
+			return null;
 		}
-		movieOB.add("directors", _directors.build());
-
+	}
 
-		JsonArray movie = movieA.add(movieOB).build();
 
-		return movie;
+	/**
+	 * Fetch a page from the cache, or from IMDB if it is not cached.
+	 *
+	 * @param url
+	 *            the URL
+	 * @return the parsed page
+	 * @throws IOException
+	 */
+	private Document fetchPage(String url) throws IOException {
+		String page = this.cache == null ? null : this.cache.get(url);
+		if (page == null) {
+			page = this.scheduler.fetch(url, 10*1000);
+			if (this.cache != null) {
+				this.cache.put(url, page);
+			}
+		}
+		return Jsoup.parse(page, url);
 	}
 
-	
-	
 	/**
 	 * Helper method to remove html and formating from text.
 	 *
@@ -301,16 +364,42 @@ public class IMDBSpider {
 		String moviesPath = "./data/movies.json";
 		String outputDir = "./data";
 
-		if (argv.length == 2) {
+		int concurrency = 1;
+		PageCache cache = null;
+
+		// "--jsonl" or "--jsonl.gz" appends the movies to segments of 64 MB
+		List<String> args = new ArrayList<>(Arrays.asList(argv));
+		boolean jsonl = args.remove("--jsonl");
+		boolean gzip = args.remove("--jsonl.gz");
+		argv = args.toArray(new String[0]);
+
+		if (argv.length >= 2 && argv.length <= 5) {
 			moviesPath = argv[0];
 			outputDir = argv[1];
+			if (argv.length >= 3) {
+				concurrency = Integer.parseInt(argv[2]);
+			}
+			if (argv.length >= 4) {
+				// pages are fetched again after a week, the cache holds up to 1 GB
+				cache = new PageCache(new File(argv[3]), 7L * 24 * 60 * 60 * 1000, 1L << 30,
+						argv.length == 5 && argv[4].equals("offline"));
+			}
 		} else if (argv.length != 0) {
-			System.out.println("Call with: IMDBSpider.jar <moviesPath> <outputDir>");
+			System.out.println("Call with: IMDBSpider.jar [--jsonl | --jsonl.gz] <moviesPath> <outputDir> [<concurrency> [<cacheDir> [offline]]]");
 			System.exit(0);
 		}
 
-		IMDBSpider sp = new IMDBSpider();
-		sp.fetchIMDBMovies(moviesPath, outputDir);
+		// replaying cached pages offline measures the extraction, so report its time per field
+		boolean offline = cache != null && cache.isOffline();
+		TitlePageExtractor extractor = new TitlePageExtractor(offline);
+		IMDBSpider sp = new IMDBSpider(new CrawlScheduler(), cache, extractor);
+		if (jsonl || gzip) {
+			sp.setSegments(64L << 20, gzip);
+		}
+		sp.fetchIMDBMovies(moviesPath, outputDir, concurrency);
+		if (offline) {
+			System.out.print(extractor.timingReport());
+		}
 
 		
 		long end = System.currentTimeMillis();
@@ -318,4 +407,4 @@ public class IMDBSpider {
 
 	}
 }
-
+
@@ -0,0 +1,147 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.Arrays;
+
+/**
+ * Counts non-negative int ids, e.g. of the global SymbolTable, in an
+ * open-addressing hash table with linear probing. The table only grows with
+ * the number of distinct ids counted, not with the largest id, so a counter
+ * over a small part of the movies stays small.
+ */
+public class IdCounter {
+
+  // id + 1, 0 for an empty slot
+  private int[] keys;
+  private int[] counts;
+  private int size;
+
+  public IdCounter() {
+    this(64);
+  }
+
+  /**
+   *
+   * @param expectedKeys
+   *          The expected number of distinct ids
+   */
+  public IdCounter(int expectedKeys) {
+    int capacity = Integer.highestOneBit(Math.max(expectedKeys, 8) * 2 - 1)
+        << 1;
+    this.keys = new int[capacity];
+    this.counts = new int[capacity];
+  }
+
+  /**
+   *
+   * @param id
+   *          The id to count
+   */
+  public void increment(int id) {
+    add(id, 1);
+  }
+
+  /**
+   *
+   * @param id
+   *          The id to count
+   * @param delta
+   *          The amount to add to the count of 'id'
+   */
+  public void add(int id, int delta) {
+    int key = id + 1;
+    int mask = this.keys.length - 1;
+    int i = spread(key) & mask;
+    while (this.keys[i] != 0) {
+      if (this.keys[i] == key) {
+        this.counts[i] += delta;
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    this.keys[i] = key;
+    this.counts[i] = delta;
+    if (++this.size * 2 > this.keys.length) {
+      grow();
+    }
+  }
+
+  /**
+   *
+   * @param id
+   *          The id
+   * @return The count of 'id', 0 if it was never counted
+   */
+  public int get(int id) {
+    int key = id + 1;
+    int mask = this.keys.length - 1;
+    for (int i = spread(key) & mask; this.keys[i] != 0; i = (i + 1) & mask) {
+      if (this.keys[i] == key) {
+        return this.counts[i];
+      }
+    }
+    return 0;
+  }
+
+  /**
+   *
+   * @return The number of distinct ids
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Add all counts of another counter to this counter, entry by entry.
+   *
+   * @param other
+   *          Another counter
+   */
+  public void addAll(IdCounter other) {
+    for (int i = 0; i < other.keys.length; i++) {
+      if (other.keys[i] != 0) {
+        add(other.keys[i] - 1, other.counts[i]);
+      }
+    }
+  }
+
+  /**
+   *
+   * @param minCount
+   *          The smallest count of the ids to return
+   * @return The ids counted at least 'minCount' times, in ascending order
+   */
+  public int[] ids(int minCount) {
+    int[] result = new int[this.size];
+    int n = 0;
+    for (int i = 0; i < this.keys.length; i++) {
+      if (this.keys[i] != 0 && this.counts[i] >= minCount) {
+        result[n++] = this.keys[i] - 1;
+      }
+    }
+    Arrays.sort(result, 0, n);
+    return Arrays.copyOf(result, n);
+  }
+
+  private void grow() {
+    int[] oldKeys = this.keys;
+    int[] oldCounts = this.counts;
+    this.keys = new int[oldKeys.length * 2];
+    this.counts = new int[oldKeys.length * 2];
+    int mask = this.keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] != 0) {
+        int i = spread(oldKeys[j]) & mask;
+        while (this.keys[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        this.keys[i] = oldKeys[j];
+        this.counts[i] = oldCounts[j];
+      }
+    }
+  }
+
+  private static int spread(int h) {
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
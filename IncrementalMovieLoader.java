@@ -0,0 +1,315 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a list of movies in step with the JSON files in a directory, e.g.
+ * while the spider adds and rewrites 'i.json' files. Each refresh only reads
+ * the files that were created or changed since the last one, and updates the
+ * list and the registered indexes in place.
+ *
+ * Changed files are found by their modification time and by the events of a
+ * WatchService on the directory. Files named by an event are read again even
+ * if their modification time did not change; if the WatchService loses events,
+ * the whole directory is compared by modification time.
+ *
+ * The list stays dense: a deleted movie is replaced by the last movie of the
+ * list, so only the moved movie has to be indexed again. A file that cannot be
+ * parsed, e.g. because the spider is still writing it, keeps its previous
+ * movie and is read again by the next refresh.
+ *
+ * Segments written by the spider ('movies-*.jsonl[.gz]') are not followed;
+ * the loader only sees 'i.json' files.
+ *
+ * A loader is not thread-safe; queries must not run during a refresh.
+ */
+public class IncrementalMovieLoader implements Closeable {
+
+  /**
+   * The time without further events after which a change is reported.
+   */
+  static final long SETTLE_MILLIS = 200;
+
+  private final File moviesDir;
+  private final ForkJoinPool pool;
+  private final WatchService watcher;
+  private final List<Movie> movies = new ArrayList<>();
+  // row -> file name, and file name -> row for files that contain a movie
+  private final List<String> names = new ArrayList<>();
+  private final Map<String, Integer> rows = new HashMap<>();
+  // file name -> modification time of the version that was read
+  private final Map<String, Long> loaded = new HashMap<>();
+  // file names to read again, whatever their modification time
+  private final Set<String> pending = new HashSet<>();
+  private final List<MovieIndex> indexes = new ArrayList<>();
+  private boolean rescan = true;
+
+  /**
+   * Start watching a directory. The movies are read by the first refresh.
+   *
+   * @param moviesDir
+   *          The directory containing the JSON files, each ending with a
+   *          suffix ".json".
+   * @param pool
+   *          The fork-join pool the files are parsed in.
+   * @throws IOException
+   */
+  public IncrementalMovieLoader(File moviesDir, ForkJoinPool pool)
+      throws IOException {
+    this.moviesDir = moviesDir;
+    this.pool = pool;
+    this.watcher = FileSystems.getDefault().newWatchService();
+    // registered before the first scan, so no change in between is missed
+    moviesDir.toPath().register(this.watcher,
+        StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY,
+        StandardWatchEventKinds.ENTRY_DELETE);
+  }
+
+  /**
+   *
+   * @return The movies, updated in place by each refresh; must not be
+   *         modified
+   */
+  public List<Movie> getMovies() {
+    return Collections.unmodifiableList(this.movies);
+  }
+
+  /**
+   * Keep an index of the movies up to date. The index must have been built
+   * from the current movies.
+   *
+   * @param index
+   *          The index
+   */
+  public void addIndex(MovieIndex index) {
+    this.indexes.add(index);
+  }
+
+  /**
+   * Wait until a file in the directory changed, and then until no further
+   * change occurred for SETTLE_MILLIS, so that a refresh does not read files
+   * that are still being written.
+   *
+   * @throws IOException
+   *           if the thread is interrupted
+   */
+  public void awaitChange() throws IOException {
+    try {
+      WatchKey key = this.watcher.take();
+      while (key != null) {
+        collect(key);
+        key = this.watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  /**
+   * Read the files that were created or changed since the last refresh, and
+   * update the movies and indexes.
+   *
+   * @return The number of movies that were added, replaced or removed
+   * @throws IOException
+   */
+  public int refresh() throws IOException {
+    for (WatchKey key = this.watcher.poll(); key != null; key = this.watcher
+        .poll()) {
+      collect(key);
+    }
+
+    // candidates in name order, so that the first refresh adds the movies in
+    // the same order as MovieReader.readMoviesFrom
+    Set<String> candidates = new TreeSet<>(this.pending);
+    if (this.rescan) {
+      String[] all = this.moviesDir.list((dir, name) -> name.endsWith(".json"));
+      if (all == null) {
+        throw new IOException("Not a directory: " + this.moviesDir);
+      }
+      Collections.addAll(candidates, all);
+      candidates.addAll(this.loaded.keySet());
+    }
+
+    List<String> read = new ArrayList<>();
+    List<Long> times = new ArrayList<>();
+    List<String> deleted = new ArrayList<>();
+    for (String name : candidates) {
+      File file = new File(this.moviesDir, name);
+      // taken before reading, so a write during the read is seen next time
+      long time = file.lastModified();
+      if (time == 0) {
+        if (this.loaded.containsKey(name)) {
+          deleted.add(name);
+        }
+      } else if (this.pending.contains(name)
+          || !Long.valueOf(time).equals(this.loaded.get(name))) {
+        read.add(name);
+        times.add(time);
+      }
+    }
+    this.pending.clear();
+    this.rescan = false;
+
+    File[] files = new File[read.size()];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = new File(this.moviesDir, read.get(i));
+    }
+    Movie[] results = new Movie[files.length];
+    boolean[] failed = new boolean[files.length];
+    this.pool.invoke(new ReadFiles(files, results, failed, 0, files.length));
+
+    int changed = 0;
+    for (int i = 0; i < files.length; i++) {
+      String name = read.get(i);
+      if (failed[i]) {
+        this.pending.add(name);
+        continue;
+      }
+      this.loaded.put(name, times.get(i));
+      Integer row = this.rows.get(name);
+      if (row != null && results[i] != null) {
+        replace(row, results[i]);
+        changed++;
+      } else if (row != null) {
+        remove(row);
+        changed++;
+      } else if (results[i] != null) {
+        append(name, results[i]);
+        changed++;
+      }
+    }
+    for (String name : deleted) {
+      this.loaded.remove(name);
+      Integer row = this.rows.get(name);
+      if (row != null) {
+        remove(row);
+        changed++;
+      }
+    }
+    return changed;
+  }
+
+  private void collect(WatchKey key) {
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        this.rescan = true;
+      } else {
+        String name = ((Path) event.context()).getFileName().toString();
+        if (name.endsWith(".json")) {
+          this.pending.add(name);
+        }
+      }
+    }
+    if (!key.reset()) {
+      // the directory is gone; the next refresh fails on it
+      this.rescan = true;
+    }
+  }
+
+  private void append(String name, Movie movie) {
+    int row = this.movies.size();
+    this.movies.add(movie);
+    this.names.add(name);
+    this.rows.put(name, row);
+    for (MovieIndex index : this.indexes) {
+      index.add(row, movie);
+    }
+  }
+
+  private void replace(int row, Movie movie) {
+    for (MovieIndex index : this.indexes) {
+      index.remove(row, this.movies.get(row));
+      index.add(row, movie);
+    }
+    this.movies.set(row, movie);
+  }
+
+  private void remove(int row) {
+    int last = this.movies.size() - 1;
+    Movie moved = this.movies.get(last);
+    for (MovieIndex index : this.indexes) {
+      index.remove(row, this.movies.get(row));
+    }
+    this.rows.remove(this.names.get(row));
+    if (row != last) {
+      for (MovieIndex index : this.indexes) {
+        index.remove(last, moved);
+        index.add(row, moved);
+      }
+      this.movies.set(row, moved);
+      this.names.set(row, this.names.get(last));
+      this.rows.put(this.names.get(row), row);
+    }
+    this.movies.remove(last);
+    this.names.remove(last);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.watcher.close();
+  }
+
+  /**
+   * Parses the files in [from, to) into 'movies' by splitting the range in
+   * halves until it is small enough. A file that cannot be read or parsed is
+   * marked as failed.
+   */
+  private static class ReadFiles extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final File[] files;
+    private final Movie[] movies;
+    private final boolean[] failed;
+    private final int from;
+    private final int to;
+
+    ReadFiles(File[] files, Movie[] movies, boolean[] failed, int from,
+        int to) {
+      this.files = files;
+      this.movies = movies;
+      this.failed = failed;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.to - this.from <= MovieReader.SHARD_SIZE) {
+        for (int i = this.from; i < this.to; i++) {
+          try {
+            this.movies[i] = MovieReader.readMovie(this.files[i]);
+          } catch (IOException | RuntimeException e) {
+            this.failed[i] = true;
+          }
+        }
+        return;
+      }
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(
+          new ReadFiles(this.files, this.movies, this.failed, this.from, mid),
+          new ReadFiles(this.files, this.movies, this.failed, mid, this.to));
+    }
+  }
+}
@@ -0,0 +1,133 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints.
+ */
+public class IntList {
+
+  private int[] values;
+  private int size;
+
+  public IntList() {
+    this(8);
+  }
+
+  /**
+   * 
+   * @param capacity
+   *          The initial capacity
+   */
+  public IntList(int capacity) {
+    this.values = new int[Math.max(capacity, 1)];
+  }
+
+  /**
+   * 
+   * @param value
+   *          The value to append
+   */
+  public void add(int value) {
+    if (this.size == this.values.length) {
+      this.values = Arrays.copyOf(this.values, this.size * 2);
+    }
+    this.values[this.size++] = value;
+  }
+
+  /**
+   * 
+   * @param index
+   *          The index, at most size()
+   * @param value
+   *          The value to insert before the value at 'index'
+   */
+  public void insert(int index, int value) {
+    if (index > this.size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+    }
+    if (this.size == this.values.length) {
+      this.values = Arrays.copyOf(this.values, this.size * 2);
+    }
+    System.arraycopy(this.values, index, this.values, index + 1, this.size - index);
+    this.values[index] = value;
+    this.size++;
+  }
+
+  /**
+   * 
+   * @param from
+   *          The first index to remove (inclusive)
+   * @param to
+   *          The last index to remove (exclusive)
+   */
+  public void remove(int from, int to) {
+    if (from > to || to > this.size) {
+      throw new IndexOutOfBoundsException("From: " + from + ", To: " + to + ", Size: " + this.size);
+    }
+    System.arraycopy(this.values, to, this.values, from, this.size - to);
+    this.size -= to - from;
+  }
+
+  /**
+   * 
+   * @param index
+   *          The index
+   * @param value
+   *          The new value at 'index'
+   */
+  public void set(int index, int value) {
+    if (index >= this.size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+    }
+    this.values[index] = value;
+  }
+
+  /**
+   * 
+   * @param value
+   *          The value to search in a list sorted in ascending order
+   * @return The index of 'value', or (-(insertion point) - 1) as in
+   *         Arrays.binarySearch
+   */
+  public int binarySearch(int value) {
+    return Arrays.binarySearch(this.values, 0, this.size, value);
+  }
+
+  /**
+   * 
+   * @param index
+   *          The index
+   * @return The value at 'index'
+   */
+  public int get(int index) {
+    if (index >= this.size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+    }
+    return this.values[index];
+  }
+
+  /**
+   * 
+   * @return The last value
+   */
+  public int last() {
+    return get(this.size - 1);
+  }
+
+  /**
+   * 
+   * @return The number of values
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * 
+   * @return A copy of the values
+   */
+  public int[] toArray() {
+    return Arrays.copyOf(this.values, this.size);
+  }
+}
@@ -0,0 +1,153 @@
+//package ue_inforet_imdb_spider_study;
+
+/**
+ * Counts primitive long keys in an open-addressing hash table with linear
+ * probing. Key 0 marks a free slot in the table and is counted separately.
+ */
+public class LongIntCounter {
+
+  /**
+   * Called with a key and its count.
+   */
+  public interface Consumer {
+    void accept(long key, int count);
+  }
+
+  private long[] keys;
+  private int[] counts;
+  private int size;
+  private boolean hasZero;
+  private int zeroCount;
+
+  public LongIntCounter() {
+    this(1024);
+  }
+
+  /**
+   * 
+   * @param expectedKeys
+   *          The expected number of distinct keys
+   */
+  public LongIntCounter(int expectedKeys) {
+    int capacity = Integer.highestOneBit(Math.max(expectedKeys, 8) * 2 - 1) << 1;
+    this.keys = new long[capacity];
+    this.counts = new int[capacity];
+  }
+
+  /**
+   * 
+   * @param key
+   *          The key to count
+   */
+  public void increment(long key) {
+    add(key, 1);
+  }
+
+  /**
+   * 
+   * @param key
+   *          The key to count
+   * @param delta
+   *          The amount to add to the count of 'key'
+   */
+  public void add(long key, int delta) {
+    if (key == 0) {
+      if (!this.hasZero) {
+        this.hasZero = true;
+        this.size++;
+      }
+      this.zeroCount += delta;
+      return;
+    }
+    int mask = this.keys.length - 1;
+    int i = spread(key) & mask;
+    while (this.keys[i] != 0) {
+      if (this.keys[i] == key) {
+        this.counts[i] += delta;
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    this.keys[i] = key;
+    this.counts[i] = delta;
+    if (++this.size * 2 > this.keys.length) {
+      grow();
+    }
+  }
+
+  /**
+   * 
+   * @param key
+   *          The key
+   * @return The count of 'key', 0 if it was never counted
+   */
+  public int get(long key) {
+    if (key == 0) {
+      return this.zeroCount;
+    }
+    int mask = this.keys.length - 1;
+    for (int i = spread(key) & mask; this.keys[i] != 0; i = (i + 1) & mask) {
+      if (this.keys[i] == key) {
+        return this.counts[i];
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * 
+   * @return The number of distinct keys
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Add all counts of another counter to this counter.
+   *
+   * @param other
+   *          Another counter
+   */
+  public void addAll(LongIntCounter other) {
+    other.forEach(this::add);
+  }
+
+  /**
+   * 
+   * @param action
+   *          Called with every key and its count
+   */
+  public void forEach(Consumer action) {
+    if (this.hasZero) {
+      action.accept(0, this.zeroCount);
+    }
+    for (int i = 0; i < this.keys.length; i++) {
+      if (this.keys[i] != 0) {
+        action.accept(this.keys[i], this.counts[i]);
+      }
+    }
+  }
+
+  private void grow() {
+    long[] oldKeys = this.keys;
+    int[] oldCounts = this.counts;
+    this.keys = new long[oldKeys.length * 2];
+    this.counts = new int[oldKeys.length * 2];
+    int mask = this.keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] != 0) {
+        int i = spread(oldKeys[j]) & mask;
+        while (this.keys[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        this.keys[i] = oldKeys[j];
+        this.counts[i] = oldCounts[j];
+      }
+    }
+  }
+
+  private static int spread(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
@@ -0,0 +1,178 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.List;
+
+/**
+ * A read-only view of a movie in a memory-mapped {@link MovieSnapshot}. The
+ * view only holds the snapshot and the index of the movie; each getter decodes
+ * its field from the mapping when it is called, so the descriptions and lists
+ * of a corpus stay off the heap. Numeric fields are read from the columns of
+ * the snapshot, Strings and lists from the record of the movie.
+ *
+ * Two views are equal if they show the same movie of the same snapshot.
+ */
+public class MappedMovie extends Movie {
+
+  private final MovieSnapshot snapshot;
+  private final int index;
+
+  MappedMovie(MovieSnapshot snapshot, int index) {
+    this.snapshot = snapshot;
+    this.index = index;
+  }
+
+  /**
+   *
+   * @return The index of the movie in its snapshot
+   */
+  public int getIndex() {
+    return this.index;
+  }
+
+  @Override
+  public String getTitle() {
+    return this.snapshot.getString(this.index, MovieSnapshot.TITLE);
+  }
+
+  @Override
+  public String getYear() {
+    return this.snapshot.getString(this.index, MovieSnapshot.YEAR);
+  }
+
+  @Override
+  public String getUrl() {
+    return this.snapshot.getString(this.index, MovieSnapshot.URL);
+  }
+
+  @Override
+  public List<String> getGenreList() {
+    return this.snapshot.getList(this.index, MovieSnapshot.GENRES);
+  }
+
+  @Override
+  public int[] getGenreIds() {
+    return this.snapshot.getIds(this.index, MovieSnapshot.GENRES);
+  }
+
+  @Override
+  public List<String> getCountryList() {
+    return this.snapshot.getList(this.index, MovieSnapshot.COUNTRIES);
+  }
+
+  @Override
+  public int[] getCountryIds() {
+    return this.snapshot.getIds(this.index, MovieSnapshot.COUNTRIES);
+  }
+
+  @Override
+  public String getDescription() {
+    return this.snapshot.getString(this.index, MovieSnapshot.DESCRIPTION);
+  }
+
+  @Override
+  public String getBudget() {
+    return this.snapshot.getString(this.index, MovieSnapshot.BUDGET);
+  }
+
+  @Override
+  public String getGross() {
+    return this.snapshot.getString(this.index, MovieSnapshot.GROSS);
+  }
+
+  @Override
+  public String getRatingValue() {
+    return this.snapshot.getString(this.index, MovieSnapshot.RATING_VALUE);
+  }
+
+  @Override
+  public String getRatingCount() {
+    return this.snapshot.getString(this.index, MovieSnapshot.RATING_COUNT);
+  }
+
+  @Override
+  public String getDuration() {
+    return this.snapshot.getString(this.index, MovieSnapshot.DURATION);
+  }
+
+  @Override
+  public List<String> getCastList() {
+    return this.snapshot.getList(this.index, MovieSnapshot.CAST);
+  }
+
+  @Override
+  public int[] getCastIds() {
+    return this.snapshot.getIds(this.index, MovieSnapshot.CAST);
+  }
+
+  @Override
+  public List<String> getCharacterList() {
+    return this.snapshot.getList(this.index, MovieSnapshot.CHARACTERS);
+  }
+
+  @Override
+  public int[] getCharacterIds() {
+    return this.snapshot.getIds(this.index, MovieSnapshot.CHARACTERS);
+  }
+
+  @Override
+  public List<String> getDirectorList() {
+    return this.snapshot.getList(this.index, MovieSnapshot.DIRECTORS);
+  }
+
+  @Override
+  public int[] getDirectorIds() {
+    return this.snapshot.getIds(this.index, MovieSnapshot.DIRECTORS);
+  }
+
+  @Override
+  public int getYearNumber() {
+    return this.snapshot.getYearNumber(this.index);
+  }
+
+  @Override
+  public long getBudgetAmount() {
+    return this.snapshot.getBudgetAmount(this.index);
+  }
+
+  @Override
+  public String getBudgetCurrency() {
+    return this.snapshot.getBudgetCurrency(this.index);
+  }
+
+  @Override
+  public long getGrossAmount() {
+    return this.snapshot.getGrossAmount(this.index);
+  }
+
+  @Override
+  public String getGrossCurrency() {
+    return this.snapshot.getGrossCurrency(this.index);
+  }
+
+  @Override
+  public float getRating() {
+    return this.snapshot.getRating(this.index);
+  }
+
+  @Override
+  public int getVoteCount() {
+    return this.snapshot.getVoteCount(this.index);
+  }
+
+  @Override
+  public int getDurationMinutes() {
+    return this.snapshot.getDurationMinutes(this.index);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof MappedMovie
+        && ((MappedMovie) obj).snapshot == this.snapshot
+        && ((MappedMovie) obj).index == this.index;
+  }
+
+  @Override
+  public int hashCode() {
+    return this.index;
+  }
+}
@@ -1,280 +1,178 @@
 //package ue_inforet_imdb_spider_study;
 
-import java.util.ArrayList;
 import java.util.List;
 
-public class Movie {
-
-  private String title;
-  private String year;
-  private String url;
-  private List<String> genreList = new ArrayList<>();
-  private List<String> countryList = new ArrayList<>();
-  private String description;
-  private String budget;
-  private String gross;
-  private String ratingValue;
-  private String ratingCount;
-  private String duration;
-  private List<String> castList = new ArrayList<>();
-  private List<String> characterList = new ArrayList<>();
-  private List<String> directorList = new ArrayList<>();
+/**
+ * A movie, as read by the queries. The fields are only read through getters,
+ * so a movie can be a {@link HeapMovie} holding its fields on the heap, or a
+ * {@link MappedMovie} decoding them from a snapshot on each call.
+ */
+public abstract class Movie {
 
   /**
    * 
    * @return The title
    */
-  public String getTitle() {
-    return this.title;
-  }
-
-  /**
-   * 
-   * @param title
-   *          The title
-   */
-  public void setTitle(String title) {
-    this.title = title;
-  }
+  public abstract String getTitle();
 
   /**
    * 
    * @return The year
    */
-  public String getYear() {
-    if (this.year == null || this.year.trim().equals("")) {
-      return "0";
-    }
-    return this.year;
-  }
+  public abstract String getYear();
 
   /**
    * 
-   * @param year
-   *          The year
+   * @return The url
    */
-  public void setYear(String year) {
-    this.year = year;
-  }
+  public abstract String getUrl();
 
   /**
    * 
-   * @return The url
+   * @return The genreList
    */
-  public String getUrl() {
-    return this.url;
-  }
+  public abstract List<String> getGenreList();
 
   /**
    * 
-   * @param url
-   *          The URL
+   * @return The ids of the genreList in the global SymbolTable
    */
-  public void setUrl(String url) {
-    this.url = url;
-  }
+  public abstract int[] getGenreIds();
 
   /**
    * 
-   * @return The genreList
+   * @return The countryList
    */
-  public List<String> getGenreList() {
-    return this.genreList;
-  }
+  public abstract List<String> getCountryList();
 
   /**
    * 
-   * @param genreList
-   *          The genreList
+   * @return The ids of the countryList in the global SymbolTable
    */
-  public void setGenreList(List<String> genreList) {
-    this.genreList = genreList;
-  }
+  public abstract int[] getCountryIds();
 
   /**
    * 
-   * @return The countryList
+   * @return The description
    */
-  public List<String> getCountryList() {
-    return this.countryList;
-  }
+  public abstract String getDescription();
 
   /**
    * 
-   * @param countryList
-   *          The countryList
+   * @return The budget
    */
-  public void setCountryList(List<String> countryList) {
-    this.countryList = countryList;
-  }
+  public abstract String getBudget();
 
   /**
    * 
-   * @return The description
+   * @return The gross
    */
-  public String getDescription() {
-    return this.description;
-  }
+  public abstract String getGross();
 
   /**
    * 
-   * @param description
-   *          The description
+   * @return The ratingValue
    */
-  public void setDescription(String description) {
-    this.description = description;
-  }
+  public abstract String getRatingValue();
 
   /**
    * 
-   * @return The budget
+   * @return The ratingCount
    */
-  public String getBudget() {
-    if (this.budget == null || this.budget.trim().equals("")) {
-      return "0";
-    }
-    return this.budget;
-  }
+  public abstract String getRatingCount();
 
   /**
    * 
-   * @param budget
-   *          The budget
+   * @return The duration
    */
-  public void setBudget(String budget) {
-    this.budget = budget;
-  }
+  public abstract String getDuration();
 
   /**
    * 
-   * @return The gross
+   * @return The castList
    */
-  public String getGross() {
-    if (this.gross == null || this.gross.trim().equals("")) {
-      return "0";
-    }
-    return this.gross;
-  }
+  public abstract List<String> getCastList();
 
   /**
    * 
-   * @param gross
-   *          The gross
+   * @return The ids of the castList in the global SymbolTable
    */
-  public void setGross(String gross) {
-    this.gross = gross;
-  }
+  public abstract int[] getCastIds();
 
   /**
    * 
-   * @return The ratingValue
+   * @return The characterList
    */
-  public String getRatingValue() {
-    if (this.ratingValue == null || this.ratingValue.trim().equals("")) {
-      return "0";
-    }
-    return this.ratingValue;
-  }
+  public abstract List<String> getCharacterList();
 
   /**
    * 
-   * @param ratingValue
-   *          The ratingValue
+   * @return The ids of the characterList in the global SymbolTable
    */
-  public void setRatingValue(String ratingValue) {
-    this.ratingValue = ratingValue;
-  }
+  public abstract int[] getCharacterIds();
 
   /**
    * 
-   * @return The ratingCount
+   * @return The directorList
    */
-  public String getRatingCount() {
-    if (this.ratingCount == null || this.ratingCount.trim().equals("")) {
-      return "0";
-    }
-    return this.ratingCount;
-  }
+  public abstract List<String> getDirectorList();
 
   /**
    * 
-   * @param ratingCount
-   *          The ratingCount
+   * @return The ids of the directorList in the global SymbolTable
    */
-  public void setRatingCount(String ratingCount) {
-    this.ratingCount = ratingCount;
-  }
+  public abstract int[] getDirectorIds();
 
   /**
    * 
-   * @return The duration
+   * @return The year as a number, 0 if unknown
    */
-  public String getDuration() {
-    return this.duration;
-  }
+  public abstract int getYearNumber();
 
   /**
    * 
-   * @param duration
-   *          The duration
+   * @return The budget in whole units of the budget currency, 0 if unknown
    */
-  public void setDuration(String duration) {
-    this.duration = duration;
-  }
+  public abstract long getBudgetAmount();
 
   /**
    * 
-   * @return The castList
+   * @return The ISO currency code of the budget, e.g. "USD"
    */
-  public List<String> getCastList() {
-    return this.castList;
-  }
+  public abstract String getBudgetCurrency();
 
   /**
    * 
-   * @param castList
-   *          The castList
+   * @return The gross in whole units of the gross currency, 0 if unknown
    */
-  public void setCastList(List<String> castList) {
-    this.castList = castList;
-  }
+  public abstract long getGrossAmount();
 
   /**
    * 
-   * @return The characterList
+   * @return The ISO currency code of the gross, e.g. "USD"
    */
-  public List<String> getCharacterList() {
-    return this.characterList;
-  }
+  public abstract String getGrossCurrency();
 
   /**
    * 
-   * @param characterList
-   *          The characterList
+   * @return The IMDB rating as a number, 0 if unknown
    */
-  public void setCharacterList(List<String> characterList) {
-    this.characterList = characterList;
-  }
+  public abstract float getRating();
 
   /**
    * 
-   * @return The directorList
+   * @return The number of IMDB votes, 0 if unknown
    */
-  public List<String> getDirectorList() {
-    return this.directorList;
-  }
+  public abstract int getVoteCount();
 
   /**
    * 
-   * @param directorList
-   *          The directorList
+   * @return The duration in minutes, 0 if unknown
    */
-  public void setDirectorList(List<String> directorList) {
-    this.directorList = directorList;
-  }
+  public abstract int getDurationMinutes();
 
   @Override
   public String toString() {
-    return this.title;
+    return getTitle();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bitmap indexes on the genres, countries and years of a list of movies.
+ * Movies are identified by their position in the list, and can be added and
+ * removed in place.
+ */
+public class MovieBitmapIndex implements MovieIndex {
+
+  private static final CompactBitmap EMPTY = new CompactBitmap();
+
+  private final Map<String, CompactBitmap> genres = new HashMap<>();
+  private final Map<String, CompactBitmap> countries = new HashMap<>();
+  private final Map<Integer, CompactBitmap> years = new HashMap<>();
+
+  /**
+   * Index the genres, countries and years of 'movies'.
+   *
+   * @param movies
+   *          The movies
+   */
+  public MovieBitmapIndex(List<Movie> movies) {
+    for (int id = 0; id < movies.size(); id++) {
+      add(id, movies.get(id));
+    }
+  }
+
+  @Override
+  public void add(int id, Movie movie) {
+    for (String genre : movie.getGenreList()) {
+      this.genres.computeIfAbsent(genre, k -> new CompactBitmap()).add(id);
+    }
+    for (String country : movie.getCountryList()) {
+      this.countries.computeIfAbsent(country, k -> new CompactBitmap()).add(id);
+    }
+    this.years.computeIfAbsent(movie.getYearNumber(), k -> new CompactBitmap())
+        .add(id);
+  }
+
+  @Override
+  public void remove(int id, Movie movie) {
+    for (String genre : movie.getGenreList()) {
+      remove(this.genres, genre, id);
+    }
+    for (String country : movie.getCountryList()) {
+      remove(this.countries, country, id);
+    }
+    remove(this.years, movie.getYearNumber(), id);
+  }
+
+  private static <K> void remove(Map<K, CompactBitmap> bitmaps, K key, int id) {
+    CompactBitmap bitmap = bitmaps.get(key);
+    if (bitmap != null) {
+      bitmap.remove(id);
+      if (bitmap.cardinality() == 0) {
+        bitmaps.remove(key);
+      }
+    }
+  }
+
+  /**
+   * 
+   * @param genre
+   *          The genre, e.g. "Sci-Fi"
+   * @return The movies of the genre; must not be modified
+   */
+  public CompactBitmap genre(String genre) {
+    return this.genres.getOrDefault(genre, EMPTY);
+  }
+
+  /**
+   * 
+   * @param country
+   *          The country, e.g. "USA"
+   * @return The movies produced in the country; must not be modified
+   */
+  public CompactBitmap country(String country) {
+    return this.countries.getOrDefault(country, EMPTY);
+  }
+
+  /**
+   * 
+   * @param year
+   *          The year, 0 for movies without a year
+   * @return The movies published in the year; must not be modified
+   */
+  public CompactBitmap year(int year) {
+    return this.years.getOrDefault(year, EMPTY);
+  }
+
+  /**
+   * 
+   * @param from
+   *          The first year (inclusive)
+   * @param to
+   *          The last year (inclusive)
+   * @return A new bitmap of the movies published between the two years
+   */
+  public CompactBitmap years(int from, int to) {
+    List<CompactBitmap> buckets = new ArrayList<>();
+    for (Map.Entry<Integer, CompactBitmap> bucket : this.years.entrySet()) {
+      if (bucket.getKey() >= from && bucket.getKey() <= to) {
+        buckets.add(bucket.getValue());
+      }
+    }
+    return CompactBitmap.or(buckets);
+  }
+
+  /**
+   * 
+   * @param from
+   *          The first year (inclusive)
+   * @param to
+   *          The last year (inclusive)
+   * @return The number of movies published between the two years
+   */
+  public int countYears(int from, int to) {
+    int count = 0;
+    for (Map.Entry<Integer, CompactBitmap> bucket : this.years.entrySet()) {
+      if (bucket.getKey() >= from && bucket.getKey() <= to) {
+        count += bucket.getValue().cardinality();
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,32 @@
+//package ue_inforet_imdb_spider_study;
+
+/**
+ * An index over a list of movies, identified by their position in the list,
+ * that can follow changes of the list in place.
+ *
+ * A movie is replaced by removing the old movie and adding the new one at the
+ * same position. Only the last position may be removed for good; other
+ * positions are filled again before the index is queried.
+ */
+public interface MovieIndex {
+
+  /**
+   * Index a movie at a position, which is either empty or size() of the list.
+   *
+   * @param id
+   *          The position of the movie
+   * @param movie
+   *          The movie
+   */
+  void add(int id, Movie movie);
+
+  /**
+   * Remove a movie from the index.
+   *
+   * @param id
+   *          The position of the movie
+   * @param movie
+   *          The movie as it was added
+   */
+  void remove(int id, Movie movie);
+}
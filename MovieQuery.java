@@ -0,0 +1,369 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A declarative question about a list of movies: a conjunction of conditions
+ * on typed fields, genres, countries and the description, and optionally a
+ * grouping, an order and a limit. A query only describes the result; a
+ * {@link QueryPlanner} decides how the matching movies are found.
+ *
+ * The result lists the matching movies in list order. With an order, movies
+ * that compare equal stay in list order. With a grouping, it lists the first
+ * movie of each group in that order, by ascending key. The limit applies last.
+ *
+ * For example, the best-rated movie of each year from 1990 to 2010 with more
+ * than 10,000 votes:
+ *
+ * <pre>
+ * new MovieQuery().range(Field.YEAR, 1990, 2010)
+ *     .greaterThan(Field.VOTES, 10000).groupBy(Field.YEAR)
+ *     .orderBy(Field.RATING, true);
+ * </pre>
+ */
+public class MovieQuery {
+
+  /**
+   * A numeric field of a movie.
+   */
+  public enum Field {
+    YEAR(true) {
+      @Override
+      public double get(Movie movie) {
+        return movie.getYearNumber();
+      }
+    },
+    RATING(false) {
+      @Override
+      public double get(Movie movie) {
+        return movie.getRating();
+      }
+    },
+    VOTES(true) {
+      @Override
+      public double get(Movie movie) {
+        return movie.getVoteCount();
+      }
+    },
+    BUDGET(true) {
+      @Override
+      public double get(Movie movie) {
+        return movie.getBudgetAmount();
+      }
+    },
+    GROSS(true) {
+      @Override
+      public double get(Movie movie) {
+        return movie.getGrossAmount();
+      }
+    },
+    DURATION(true) {
+      @Override
+      public double get(Movie movie) {
+        return movie.getDurationMinutes();
+      }
+    };
+
+    private final boolean integral;
+
+    Field(boolean integral) {
+      this.integral = integral;
+    }
+
+    /**
+     *
+     * @param movie
+     *          The movie
+     * @return The value of the field
+     */
+    public abstract double get(Movie movie);
+
+    /**
+     *
+     * @return true if the field only has whole values
+     */
+    public boolean isIntegral() {
+      return this.integral;
+    }
+  }
+
+  /**
+   * The kinds of conditions.
+   */
+  enum Kind {
+    RANGE, GENRE, COUNTRY, TEXT, TEXT_EXACT, FILTER
+  }
+
+  /**
+   * One condition of a query.
+   */
+  static class Condition {
+    final Kind kind;
+    final Field field;
+    final double min;
+    final double max;
+    final String value;
+    final Predicate<Movie> filter;
+
+    Condition(Kind kind, Field field, double min, double max, String value,
+        Predicate<Movie> filter) {
+      this.kind = kind;
+      this.field = field;
+      this.min = min;
+      this.max = max;
+      this.value = value;
+      this.filter = filter;
+    }
+
+    boolean test(Movie movie) {
+      switch (this.kind) {
+        case RANGE:
+          double v = this.field.get(movie);
+          return v >= this.min && v <= this.max;
+        case GENRE:
+          return movie.getGenreList().contains(this.value);
+        case COUNTRY:
+          return movie.getCountryList().contains(this.value);
+        case TEXT:
+          return description(movie).toLowerCase()
+              .contains(this.value.toLowerCase());
+        case TEXT_EXACT:
+          return description(movie).contains(this.value);
+        default:
+          return this.filter.test(movie);
+      }
+    }
+
+    private static String description(Movie movie) {
+      return movie.getDescription() == null ? "" : movie.getDescription();
+    }
+
+    @Override
+    public String toString() {
+      switch (this.kind) {
+        case RANGE:
+          return this.field.name().toLowerCase() + " in ["
+              + bound(this.min, true) + ", " + bound(this.max, false) + "]";
+        case GENRE:
+          return "genre = " + this.value;
+        case COUNTRY:
+          return "country = " + this.value;
+        case TEXT:
+          return "description contains \"" + this.value + "\" in any case";
+        case TEXT_EXACT:
+          return "description contains \"" + this.value + "\"";
+        default:
+          return "filter";
+      }
+    }
+
+    private String bound(double bound, boolean lower) {
+      if (Double.isInfinite(bound)) {
+        return bound < 0 ? "-inf" : "inf";
+      }
+      if (this.field.isIntegral()) {
+        return String.valueOf((long) (lower ? Math.ceil(bound)
+            : Math.floor(bound)));
+      }
+      return String.valueOf(bound);
+    }
+  }
+
+  private final List<Condition> conditions = new ArrayList<>();
+  private Field groupBy;
+  private Field orderBy;
+  private boolean descending;
+  private int limit = Integer.MAX_VALUE;
+
+  /**
+   * Keep the movies whose field lies between two values.
+   *
+   * @param field
+   *          The field
+   * @param min
+   *          The smallest value (inclusive)
+   * @param max
+   *          The largest value (inclusive)
+   * @return This query
+   */
+  public MovieQuery range(Field field, double min, double max) {
+    this.conditions.add(new Condition(Kind.RANGE, field, min, max, null, null));
+    return this;
+  }
+
+  /**
+   *
+   * @param field
+   *          The field
+   * @param min
+   *          The value the field has to exceed
+   * @return This query
+   */
+  public MovieQuery greaterThan(Field field, double min) {
+    return range(field, Math.nextUp(min), Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   *
+   * @param field
+   *          The field
+   * @param min
+   *          The smallest value (inclusive)
+   * @return This query
+   */
+  public MovieQuery atLeast(Field field, double min) {
+    return range(field, min, Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   *
+   * @param field
+   *          The field
+   * @param max
+   *          The value the field has to stay below
+   * @return This query
+   */
+  public MovieQuery lessThan(Field field, double max) {
+    return range(field, Double.NEGATIVE_INFINITY, Math.nextDown(max));
+  }
+
+  /**
+   *
+   * @param field
+   *          The field
+   * @param max
+   *          The largest value (inclusive)
+   * @return This query
+   */
+  public MovieQuery atMost(Field field, double max) {
+    return range(field, Double.NEGATIVE_INFINITY, max);
+  }
+
+  /**
+   *
+   * @param genre
+   *          A genre the movies must have, e.g. "Sci-Fi"
+   * @return This query
+   */
+  public MovieQuery genre(String genre) {
+    this.conditions.add(new Condition(Kind.GENRE, null, 0, 0, genre, null));
+    return this;
+  }
+
+  /**
+   *
+   * @param country
+   *          A country the movies must have, e.g. "USA"
+   * @return This query
+   */
+  public MovieQuery country(String country) {
+    this.conditions.add(new Condition(Kind.COUNTRY, null, 0, 0, country, null));
+    return this;
+  }
+
+  /**
+   *
+   * @param substring
+   *          A String the lowercase description must contain, matched in any
+   *          case
+   * @return This query
+   */
+  public MovieQuery contains(String substring) {
+    this.conditions.add(new Condition(Kind.TEXT, null, 0, 0, substring, null));
+    return this;
+  }
+
+  /**
+   *
+   * @param substring
+   *          A String the description must contain (case-aware)
+   * @return This query
+   */
+  public MovieQuery containsExact(String substring) {
+    this.conditions
+        .add(new Condition(Kind.TEXT_EXACT, null, 0, 0, substring, null));
+    return this;
+  }
+
+  /**
+   * Keep the movies matching an arbitrary predicate, which no index can
+   * answer.
+   *
+   * @param filter
+   *          The predicate
+   * @return This query
+   */
+  public MovieQuery filter(Predicate<Movie> filter) {
+    this.conditions.add(new Condition(Kind.FILTER, null, 0, 0, null, filter));
+    return this;
+  }
+
+  /**
+   * Keep only the first movie of each value of a field, in the order of the
+   * query. Dense values, as years, are grouped in arrays over their range;
+   * values spread wider than the matching movies, as budgets, in a sorted
+   * map.
+   *
+   * @param field
+   *          A field with whole values
+   * @return This query
+   */
+  public MovieQuery groupBy(Field field) {
+    if (!field.isIntegral()) {
+      throw new IllegalArgumentException("Not a whole-valued field: " + field);
+    }
+    this.groupBy = field;
+    return this;
+  }
+
+  /**
+   *
+   * @param field
+   *          The field to order the movies by
+   * @param descending
+   *          true for the largest values first
+   * @return This query
+   */
+  public MovieQuery orderBy(Field field, boolean descending) {
+    this.orderBy = field;
+    this.descending = descending;
+    return this;
+  }
+
+  /**
+   *
+   * @param limit
+   *          The largest number of movies to return
+   * @return This query
+   */
+  public MovieQuery limit(int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Negative limit: " + limit);
+    }
+    this.limit = limit;
+    return this;
+  }
+
+  List<Condition> getConditions() {
+    return Collections.unmodifiableList(this.conditions);
+  }
+
+  Field getGroupBy() {
+    return this.groupBy;
+  }
+
+  Field getOrderBy() {
+    return this.orderBy;
+  }
+
+  boolean isDescending() {
+    return this.descending;
+  }
+
+  int getLimit() {
+    return this.limit;
+  }
+}
@@ -1,20 +1,45 @@
 //package ue_inforet_imdb_spider_study;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.GZIPInputStream;
 
 import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
-import javax.json.JsonString;
-import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParserFactory;
+import javax.json.stream.JsonParsingException;
 
 public class MovieReader {
 
+  /**
+   * The factory of all parsers, whose buffers are pooled by the factory.
+   */
+  private static final JsonParserFactory PARSERS = Json
+      .createParserFactory(null);
+
   public MovieReader() {
   }
 
@@ -32,79 +57,662 @@ public class MovieReader {
    * @param moviesDir
    *          The directory containing the set of JSON files, each ending with a
    *          suffix ".json".
-   * @return A list of movies
+   * @return A list of movies, ordered by file name
    * @throws IOException
    */
   public static List<Movie> readMoviesFrom(File moviesDir) throws IOException {
+    File[] files = moviesDir.listFiles((dir, name) -> name.endsWith(".json"));
+    if (files == null) {
+      throw new IOException("Not a directory: " + moviesDir);
+    }
+    // the same order as the parallel readers, so ties break alike
+    Arrays.sort(files);
     List<Movie> movies = new ArrayList<>();
-    for (File f : moviesDir.listFiles()) {
-      if (f.getName().endsWith(".json")) {
-        try (JsonReader reader = Json.createReader(new FileInputStream(f))) {
-          JsonArray movie = reader.readArray();
-          if (movie.size() > 0) {
-            JsonObject m = (JsonObject) movie.get(0);
-            Movie obj = new Movie();
-            obj.setTitle(getString(m, "title"));
-            obj.setYear(getString(m, "year"));
-            obj.setUrl(getString(m, "url"));
-            obj.setGenreList(getJsonArray(m, "genreList"));
-            obj.setCountryList(getJsonArray(m, "countryList"));
-            obj.setDescription(getString(m, "description"));
-            obj.setBudget(getString(m, "budget"));
-            obj.setGross(getString(m, "gross"));
-            obj.setRatingValue(getString(m, "ratingValue"));
-            obj.setRatingCount(getString(m, "ratingCount"));
-            obj.setDuration(getString(m, "duration"));
-            obj.setCastList(getJsonArray(m, ("castList")));
-            obj.setCharacterList(getJsonArray(m, ("characterList")));
-            obj.setDirectorList(getJsonArray(m, "directorList"));
-            movies.add(obj);
-          }
-        }
+    for (File f : files) {
+      Movie obj = readMovie(f);
+      if (obj != null) {
+        movies.add(obj);
       }
     }
     return movies;
   }
 
   /**
-   * A helper function to parse a JSON array.
+   * Read movies from JSON files in directory 'moviesDir' in parallel, using a
+   * fork-join pool with the given parallelism.
+   *
+   * @param moviesDir
+   *          The directory containing the set of JSON files, each ending with a
+   *          suffix ".json".
+   * @param parallelism
+   *          The number of worker threads used for parsing.
+   * @return A list of movies, ordered by file name
+   * @throws IOException
+   */
+  public static List<Movie> readMoviesFrom(File moviesDir, int parallelism)
+      throws IOException {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      return readMoviesFrom(moviesDir, pool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Read movies from JSON files in directory 'moviesDir' in parallel. The file
+   * list is sorted by name and split into shards of at most SHARD_SIZE files,
+   * which are parsed concurrently in 'pool'. The shard results are merged in
+   * file name order, so the result does not depend on thread scheduling.
    *
-   * @param m
-   *          The JSON object, containing an array under the attribute 'key'.
-   * @param key
-   *          The key of the array
-   * @return A list containing the Strings in the JSON object.
+   * @param moviesDir
+   *          The directory containing the set of JSON files, each ending with a
+   *          suffix ".json".
+   * @param pool
+   *          The fork-join pool the shards are parsed in.
+   * @return A list of movies, ordered by file name
+   * @throws IOException
    */
-  protected static List<String> getJsonArray(JsonObject m, String key) {
+  public static List<Movie> readMoviesFrom(File moviesDir, ForkJoinPool pool)
+      throws IOException {
+    File[] files = moviesDir.listFiles((dir, name) -> name.endsWith(".json"));
+    if (files == null) {
+      throw new IOException("Not a directory: " + moviesDir);
+    }
+    Arrays.sort(files);
     try {
-      JsonArray array = m.getJsonArray(key);
-      List<String> result = new ArrayList<>();
-      for (JsonValue v : array) {
-        result.add(((JsonString) v).toString());
+      return pool.invoke(new ReadShard(files, 0, files.length));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * The number of files below which a shard is parsed on a single thread.
+   */
+  static final int SHARD_SIZE = 256;
+
+  /**
+   * Parses the files in [from, to) by splitting the range in halves until it
+   * is small enough, and concatenates the results in order.
+   */
+  private static class ReadShard extends RecursiveTask<List<Movie>> {
+    private static final long serialVersionUID = 1L;
+
+    private final File[] files;
+    private final int from;
+    private final int to;
+
+    ReadShard(File[] files, int from, int to) {
+      this.files = files;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected List<Movie> compute() {
+      if (this.to - this.from <= SHARD_SIZE) {
+        List<Movie> movies = new ArrayList<>(this.to - this.from);
+        for (int i = this.from; i < this.to; i++) {
+          try {
+            Movie obj = readMovie(this.files[i]);
+            if (obj != null) {
+              movies.add(obj);
+            }
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+        return movies;
+      }
+      int mid = (this.from + this.to) >>> 1;
+      ReadShard left = new ReadShard(this.files, this.from, mid);
+      ReadShard right = new ReadShard(this.files, mid, this.to);
+      left.fork();
+      List<Movie> rightMovies = right.compute();
+      List<Movie> movies = left.join();
+      movies.addAll(rightMovies);
+      return movies;
+    }
+  }
+
+  /**
+   * Read a single movie from a JSON file.
+   *
+   * @param f
+   *          The JSON file
+   * @return The movie, or null if the file contains an empty array
+   * @throws IOException
+   */
+  protected static Movie readMovie(File f) throws IOException {
+    try (JsonParser parser = PARSERS.createParser(new FileInputStream(f),
+        StandardCharsets.UTF_8)) {
+      return readMovie(parser);
+    } catch (JsonParsingException e) {
+      throw new IOException(f + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Read a movie from the events of 'parser', which is positioned before an
+   * array whose first element is the movie object, as in 'i.json'. The fields
+   * of the Movie are filled directly from the events, without building a
+   * JsonObject first. Unknown keys are skipped, and the remaining elements of
+   * the array are not read.
+   *
+   * @param parser
+   *          The parser
+   * @return The normalized movie, or null if the array is empty
+   */
+  protected static Movie readMovie(JsonParser parser) {
+    if (parser.next() != Event.START_ARRAY) {
+      throw new JsonParsingException("Expected an array",
+          parser.getLocation());
+    }
+    Event event = parser.next();
+    if (event == Event.END_ARRAY) {
+      return null;
+    } else if (event != Event.START_OBJECT) {
+      throw new JsonParsingException("Expected a movie object",
+          parser.getLocation());
+    }
+    HeapMovie obj = new HeapMovie();
+    for (event = parser.next(); event == Event.KEY_NAME; event = parser
+        .next()) {
+      String key = parser.getString();
+      Event value = parser.next();
+      switch (key) {
+      case "title":
+        obj.setTitle(readString(parser, value));
+        break;
+      case "year":
+        obj.setYear(readString(parser, value));
+        break;
+      case "url":
+        obj.setUrl(readString(parser, value));
+        break;
+      case "genreList":
+        obj.setGenreList(readList(parser, value));
+        break;
+      case "countryList":
+        obj.setCountryList(readList(parser, value));
+        break;
+      case "description":
+        obj.setDescription(readString(parser, value));
+        break;
+      case "budget":
+        obj.setBudget(readString(parser, value));
+        break;
+      case "gross":
+        obj.setGross(readString(parser, value));
+        break;
+      case "ratingValue":
+        obj.setRatingValue(readString(parser, value));
+        break;
+      case "ratingCount":
+        obj.setRatingCount(readString(parser, value));
+        break;
+      case "duration":
+        obj.setDuration(readString(parser, value));
+        break;
+      case "castList":
+        obj.setCastList(readList(parser, value));
+        break;
+      case "characterList":
+        obj.setCharacterList(readList(parser, value));
+        break;
+      case "directorList":
+        obj.setDirectorList(readList(parser, value));
+        break;
+      default:
+        skip(parser, value);
       }
+    }
+    normalize(obj);
+    return obj;
+  }
+
+  /**
+   * @return The String or number of a value event, or "" for other values,
+   *         which are skipped
+   */
+  private static String readString(JsonParser parser, Event value) {
+    if (value == Event.VALUE_STRING || value == Event.VALUE_NUMBER) {
+      return parser.getString();
+    }
+    skip(parser, value);
+    return "";
+  }
+
+  /**
+   * @return The Strings of an array value, or an empty list for other values,
+   *         which are skipped
+   */
+  private static List<String> readList(JsonParser parser, Event value) {
+    List<String> result = new ArrayList<>();
+    if (value != Event.START_ARRAY) {
+      skip(parser, value);
       return result;
-    } catch (Exception e) {
-      return new ArrayList<>();
+    }
+    for (Event event = parser.next(); event != Event.END_ARRAY; event = parser
+        .next()) {
+      if (event == Event.VALUE_STRING) {
+        result.add(parser.getString());
+      } else {
+        skip(parser, event);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Skip a value whose first event is 'value', including nested values.
+   */
+  private static void skip(JsonParser parser, Event value) {
+    int depth = value == Event.START_OBJECT || value == Event.START_ARRAY ? 1
+        : 0;
+    while (depth > 0) {
+      Event event = parser.next();
+      if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+        depth++;
+      } else if (event == Event.END_OBJECT || event == Event.END_ARRAY) {
+        depth--;
+      }
     }
   }
 
   /**
-   * A helper function to parse a JSON String.
+   * Read movies from the JSON Lines segments in directory 'segmentsDir', as
+   * written by {@link MovieSegmentWriter}, and from the 'i.json' files an
+   * earlier crawl left in the same directory.
    *
-   * @param m
-   *          The JSON object, containing a String under the attribute 'key'.
-   * @param key
-   *          The key of the array
-   * @return The String in the JSON object.
+   * A title that occurs more than once, because it was crawled again or the
+   * spider died before recording it in its journal, keeps only its latest
+   * movie: later lines replace earlier ones, and segment lines replace the
+   * 'i.json' file of the same index. Lines written without an index are all
+   * kept.
+   *
+   * @param segmentsDir
+   *          The directory containing the segments
+   * @return A list of movies: those of the 'i.json' files by file name, then
+   *         those of the segments by segment and line
+   * @throws IOException
+   */
+  public static List<Movie> readSegmentsFrom(File segmentsDir)
+      throws IOException {
+    Segment all = new Segment();
+    for (File f : listSegments(segmentsDir)) {
+      readSegment(f, all);
+    }
+    return withFiles(segmentsDir, all, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Like {@link #readSegmentsFrom(File)}, but in parallel, using a fork-join
+   * pool with the given parallelism.
+   *
+   * @param segmentsDir
+   *          The directory containing the segments
+   * @param parallelism
+   *          The number of worker threads used for parsing.
+   * @return A list of movies, ordered as by {@link #readSegmentsFrom(File)}
+   * @throws IOException
    */
-  protected static String getString(JsonObject m, String key) {
+  public static List<Movie> readSegmentsFrom(File segmentsDir, int parallelism)
+      throws IOException {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
     try {
-      Object o = m.getString(key);
-      if (o != null) {
-        return (String) o;
-      }
+      return readSegmentsFrom(segmentsDir, pool);
     } finally {
+      pool.shutdown();
     }
-    return "";
+  }
+
+  /**
+   * @param moviesDir
+   *          A directory of movies
+   * @return true if the directory contains JSON Lines segments
+   */
+  public static boolean hasSegments(File moviesDir) {
+    String[] names = moviesDir
+        .list((dir, name) -> MovieSegmentWriter.isSegment(name));
+    return names != null && names.length > 0;
+  }
+
+  /**
+   * Like {@link #readSegmentsFrom(File)}, but in parallel, one segment per
+   * task in 'pool'. The results are merged in segment name order.
+   *
+   * @param segmentsDir
+   *          The directory containing the segments
+   * @param pool
+   *          The fork-join pool the segments and files are parsed in.
+   * @return A list of movies, ordered as by {@link #readSegmentsFrom(File)}
+   * @throws IOException
+   */
+  public static List<Movie> readSegmentsFrom(File segmentsDir,
+      ForkJoinPool pool) throws IOException {
+    List<ForkJoinTask<Segment>> tasks = new ArrayList<>();
+    for (File f : listSegments(segmentsDir)) {
+      tasks.add(pool.submit(() -> {
+        Segment segment = new Segment();
+        readSegment(f, segment);
+        return segment;
+      }));
+    }
+    Segment all = new Segment();
+    for (ForkJoinTask<Segment> task : tasks) {
+      try {
+        Segment segment = task.get();
+        all.movies.addAll(segment.movies);
+        for (int i = 0; i < segment.indexes.size(); i++) {
+          all.indexes.add(segment.indexes.get(i));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+    }
+    return withFiles(segmentsDir, all, pool);
+  }
+
+  /**
+   * The movies of one or more segments, each with the index of its title, or
+   * -1 for lines without an index.
+   */
+  private static class Segment {
+    final List<Movie> movies = new ArrayList<>();
+    final IntList indexes = new IntList();
+  }
+
+  /**
+   * @return The movies of the 'i.json' files not replaced by a segment line,
+   *         followed by the latest segment movie of each index
+   */
+  private static List<Movie> withFiles(File dir, Segment segments,
+      ForkJoinPool pool) throws IOException {
+    // index -> position of its latest line
+    Map<Integer, Integer> latest = new HashMap<>();
+    for (int i = 0; i < segments.indexes.size(); i++) {
+      if (segments.indexes.get(i) >= 0) {
+        latest.put(segments.indexes.get(i), i);
+      }
+    }
+
+    File[] files = dir.listFiles((d, name) -> name.endsWith(".json")
+        && !latest.containsKey(fileIndex(name)));
+    if (files == null) {
+      throw new IOException("Not a directory: " + dir);
+    }
+    Arrays.sort(files);
+    List<Movie> movies;
+    try {
+      movies = pool.invoke(new ReadShard(files, 0, files.length));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    for (int i = 0; i < segments.movies.size(); i++) {
+      int index = segments.indexes.get(i);
+      if (index < 0 || latest.get(index) == i) {
+        movies.add(segments.movies.get(i));
+      }
+    }
+    return movies;
+  }
+
+  /**
+   * @return The index in the title list of a file 'i.json', or -1 for other
+   *         names
+   */
+  private static int fileIndex(String name) {
+    try {
+      return Integer
+          .parseInt(name.substring(0, name.length() - ".json".length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static File[] listSegments(File segmentsDir) throws IOException {
+    File[] files = segmentsDir
+        .listFiles((dir, name) -> MovieSegmentWriter.isSegment(name));
+    if (files == null) {
+      throw new IOException("Not a directory: " + segmentsDir);
+    }
+    Arrays.sort(files);
+    return files;
+  }
+
+  /**
+   * Stream the movies of a single segment into 'segment'. The segment is read
+   * through a buffered channel, decompressed if its name ends with ".gz", and
+   * each line is parsed by a JsonParser. The last line of a segment may be cut
+   * off by a crash of the spider and is then ignored.
+   *
+   * @param f
+   *          The segment
+   * @param segment
+   *          The movies and title indexes the lines are added to
+   * @throws IOException
+   */
+  private static void readSegment(File f, Segment segment)
+      throws IOException {
+    try (InputStream raw = Channels.newInputStream(
+        FileChannel.open(f.toPath(), StandardOpenOption.READ))) {
+      InputStream in = raw;
+      if (f.getName().endsWith(".gz")) {
+        try {
+          in = new UnfinishedGzip(new GZIPInputStream(raw, 1 << 16));
+        } catch (EOFException e) {
+          // the spider stopped before the header was written: no lines yet
+          return;
+        }
+      }
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+        String line = reader.readLine();
+        while (line != null) {
+          String next = reader.readLine();
+          if (!line.isEmpty()) {
+            try (JsonParser parser = PARSERS
+                .createParser(new StringReader(line))) {
+              int index = -1;
+              if (line.charAt(0) == '{') {
+                index = readIndex(parser);
+              }
+              Movie movie = readMovie(parser);
+              if (movie != null) {
+                segment.movies.add(movie);
+                segment.indexes.add(index);
+              }
+            } catch (JsonParsingException e) {
+              if (next != null) {
+                throw new IOException(f + ": " + e.getMessage(), e);
+              }
+            }
+          }
+          line = next;
+        }
+      }
+    }
+  }
+
+  /**
+   * Read the title index of a line {"index":i,"movie":[...]}, leaving the
+   * parser before the movie array.
+   */
+  private static int readIndex(JsonParser parser) {
+    if (parser.next() != Event.START_OBJECT
+        || parser.next() != Event.KEY_NAME
+        || !parser.getString().equals(MovieSegmentWriter.INDEX)
+        || parser.next() != Event.VALUE_NUMBER) {
+      throw new JsonParsingException("Expected a title index",
+          parser.getLocation());
+    }
+    int index = parser.getInt();
+    if (parser.next() != Event.KEY_NAME
+        || !parser.getString().equals(MovieSegmentWriter.MOVIE)) {
+      throw new JsonParsingException("Expected a movie", parser.getLocation());
+    }
+    return index;
+  }
+
+  /**
+   * Ends a compressed segment at the last flushed line if the segment was not
+   * closed, instead of failing at its missing trailer.
+   */
+  private static class UnfinishedGzip extends FilterInputStream {
+
+    UnfinishedGzip(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      try {
+        return super.read();
+      } catch (EOFException e) {
+        return -1;
+      }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      try {
+        return super.read(b, off, len);
+      } catch (EOFException e) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * Fill the numeric fields and list ids of a movie from its raw string
+   * attributes, so that queries do not have to parse or compare Strings.
+   *
+   * @param obj
+   *          The movie to normalize
+   */
+  protected static void normalize(HeapMovie obj) {
+    SymbolTable symbols = SymbolTable.global();
+    obj.setGenreIds(symbols.internInPlace(obj.getGenreList()));
+    obj.setCountryIds(symbols.internInPlace(obj.getCountryList()));
+    obj.setCastIds(symbols.internInPlace(obj.getCastList()));
+    obj.setCharacterIds(symbols.internInPlace(obj.getCharacterList()));
+    obj.setDirectorIds(symbols.internInPlace(obj.getDirectorList()));
+    obj.setYearNumber((int) parseNumber(obj.getYear()));
+    obj.setBudgetAmount(parseNumber(obj.getBudget()));
+    obj.setBudgetCurrency(parseCurrency(obj.getBudget()));
+    obj.setGrossAmount(parseNumber(obj.getGross()));
+    obj.setGrossCurrency(parseCurrency(obj.getGross()));
+    obj.setRating(parseRating(obj.getRatingValue()));
+    obj.setVoteCount((int) parseNumber(obj.getRatingCount()));
+    obj.setDurationMinutes(parseDuration(obj.getDuration()));
+  }
+
+  /**
+   * A helper function to parse the first number in a String like "$237,000,000
+   * (estimated)" or "1,023,456", ignoring thousands separators.
+   *
+   * @param s
+   *          The String
+   * @return The number, or 0 if the String contains no digits.
+   */
+  protected static long parseNumber(String s) {
+    if (s == null) {
+      return 0;
+    }
+    long value = 0;
+    boolean digits = false;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= '0' && c <= '9') {
+        value = value * 10 + (c - '0');
+        digits = true;
+      } else if (digits && c != ',') {
+        break;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * A helper function to parse the currency of an amount like "$237,000,000"
+   * or "EUR10,000,000".
+   *
+   * @param s
+   *          The String
+   * @return The currency code, e.g. "USD", or "" if there is none.
+   */
+  protected static String parseCurrency(String s) {
+    if (s == null) {
+      return "";
+    }
+    int end = 0;
+    while (end < s.length() && (s.charAt(end) < '0' || s.charAt(end) > '9')) {
+      end++;
+    }
+    String symbol = s.substring(0, end).trim();
+    switch (symbol) {
+    case "$":
+      return "USD";
+    case "\u20ac":
+      return "EUR";
+    case "\u00a3":
+      return "GBP";
+    case "\u00a5":
+      return "JPY";
+    default:
+      return symbol;
+    }
+  }
+
+  /**
+   * A helper function to parse a rating like "7.9".
+   *
+   * @param s
+   *          The String
+   * @return The rating, or 0 if the String is no number.
+   */
+  protected static float parseRating(String s) {
+    try {
+      return Float.parseFloat(s.trim());
+    } catch (NumberFormatException | NullPointerException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * A helper function to parse a duration like "2h 42min" or "162 min".
+   *
+   * @param s
+   *          The String
+   * @return The duration in minutes, or 0 if the String contains no digits.
+   */
+  protected static int parseDuration(String s) {
+    if (s == null) {
+      return 0;
+    }
+    int minutes = 0;
+    int value = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= '0' && c <= '9') {
+        value = value * 10 + (c - '0');
+      } else if (c == 'h') {
+        minutes += value * 60;
+        value = 0;
+      } else if (c == 'm') {
+        minutes += value;
+        value = 0;
+      }
+    }
+    return minutes + value;
   }
 }
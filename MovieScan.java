@@ -0,0 +1,52 @@
+//package ue_inforet_imdb_spider_study;
+
+/**
+ * A query that is answered by one pass over a list of movies, in a form that
+ * can be split: each part of the list is scanned into its own partial
+ * aggregate, and the partial aggregates of consecutive parts are merged in
+ * order. Partial aggregates are only touched by one thread at a time, so they
+ * need no synchronization.
+ *
+ * @param <P>
+ *          The partial aggregate
+ * @param <R>
+ *          The result
+ */
+public interface MovieScan<P, R> {
+
+  /**
+   *
+   * @return An empty partial aggregate
+   */
+  P newPartial();
+
+  /**
+   * Add a movie to a partial aggregate.
+   *
+   * @param partial
+   *          The partial aggregate
+   * @param movie
+   *          The movie
+   */
+  void accept(P partial, Movie movie);
+
+  /**
+   * Merge the partial aggregates of two consecutive parts of the list.
+   *
+   * @param left
+   *          The partial aggregate of the first part
+   * @param right
+   *          The partial aggregate of the part following it
+   * @return The partial aggregate of both parts, which may be 'left' or
+   *         'right'
+   */
+  P merge(P left, P right);
+
+  /**
+   *
+   * @param partial
+   *          The partial aggregate of the whole list
+   * @return The result
+   */
+  R finish(P partial);
+}
@@ -0,0 +1,161 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import javax.json.JsonArray;
+
+/**
+ * Appends movies to JSON Lines segments instead of one 'i.json' per movie.
+ * Each line holds the index of the title in the title list and the movie in
+ * the format of 'i.json', i.e. an array with a single object:
+ * {"index":i,"movie":[{...}]}. A title that is crawled again is appended
+ * again; readers keep its latest line. A segment is closed once it holds more than the maximum
+ * number of bytes, and the next movie starts a new one. Segments are named
+ * 'movies-00000.jsonl', optionally gzip-compressed as 'movies-00000.jsonl.gz'.
+ *
+ * A writer never appends to an existing segment; it starts after the highest
+ * segment number in the directory, so a restarted crawl adds new segments.
+ * Each line is flushed after it is written, so a movie that is recorded in
+ * the crawl journal is in its segment even if the crawl is killed.
+ */
+public class MovieSegmentWriter implements Closeable {
+
+	static final String PREFIX = "movies-";
+	static final String SUFFIX = ".jsonl";
+	static final String GZIP_SUFFIX = ".jsonl.gz";
+	static final String INDEX = "index";
+	static final String MOVIE = "movie";
+
+	private final File dir;
+	private final long maxBytes;
+	private final boolean gzip;
+	private int segment;
+	private CountingOutputStream bytes;
+	private Writer writer;
+
+	/**
+	 * @param dir
+	 *            the directory of the segments
+	 * @param maxBytes
+	 *            the number of bytes after which a segment is closed; counted
+	 *            before compression
+	 * @param gzip
+	 *            true to compress the segments
+	 */
+	public MovieSegmentWriter(File dir, long maxBytes, boolean gzip) {
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		this.gzip = gzip;
+		this.segment = nextSegment(dir);
+	}
+
+	/**
+	 * Append a movie as one line.
+	 *
+	 * @param index
+	 *            the index of the title in the title list
+	 * @param movie
+	 *            the movie, an array with a single object
+	 * @throws IOException
+	 */
+	public synchronized void write(int index, JsonArray movie) throws IOException {
+		if (this.writer == null) {
+			open();
+		}
+		// the compact form of a JSON value contains no line breaks
+		this.writer.write("{\"" + INDEX + "\":" + index + ",\"" + MOVIE + "\":");
+		this.writer.write(movie.toString());
+		this.writer.write('}');
+		this.writer.write('\n');
+		this.writer.flush();
+		if (this.bytes.count >= this.maxBytes) {
+			close();
+		}
+	}
+
+	/**
+	 * Close the current segment. The next movie starts a new segment.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.writer != null) {
+			this.writer.close();
+			this.writer = null;
+			this.segment++;
+		}
+	}
+
+	private void open() throws IOException {
+		File file = new File(this.dir, String.format("%s%05d%s", PREFIX, this.segment, this.gzip ? GZIP_SUFFIX : SUFFIX));
+		this.bytes = new CountingOutputStream();
+		OutputStream out = new FileOutputStream(file);
+		if (this.gzip) {
+			// a sync flush completes each line, keeping the dictionary for the next one
+			out = new GZIPOutputStream(out, 1 << 16, true);
+		}
+		this.bytes.out = out;
+		this.writer = new BufferedWriter(new OutputStreamWriter(this.bytes, StandardCharsets.UTF_8), 1 << 16);
+	}
+
+	/**
+	 * @return true if 'name' is the name of a segment
+	 */
+	static boolean isSegment(String name) {
+		return name.startsWith(PREFIX) && (name.endsWith(SUFFIX) || name.endsWith(GZIP_SUFFIX));
+	}
+
+	private static int nextSegment(File dir) {
+		int next = 0;
+		String[] names = dir.list();
+		if (names != null) {
+			for (String name : names) {
+				if (isSegment(name)) {
+					String number = name.substring(PREFIX.length(), name.indexOf('.'));
+					try {
+						next = Math.max(next, Integer.parseInt(number) + 1);
+					} catch (NumberFormatException e) {
+						continue;
+					}
+				}
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Counts the uncompressed bytes of the current segment.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+		OutputStream out;
+		long count;
+
+		@Override
+		public void write(int b) throws IOException {
+			this.out.write(b);
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+			this.count += len;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			this.out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.out.close();
+		}
+	}
+}
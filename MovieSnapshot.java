@@ -0,0 +1,516 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A binary snapshot of a loaded list of movies, so that later runs do not
+ * have to parse the JSON files again. The file is memory-mapped when it is
+ * opened and decoded from the mapping. All numbers are big-endian.
+ *
+ * <pre>
+ * int     magic "IMDS", int version, int movie count n, int dictionary size d
+ * long    the fingerprint of the files the movies were read from
+ * d times a String                    the values of the lists and currencies
+ * int[n]  year, float[n] rating, int[n] vote count, long[n] budget,
+ * long[n] gross, int[n] budget currency, int[n] gross currency,
+ * int[n]  duration                    the normalized values as columns
+ * n times a record                    url, title, year, description, budget,
+ *                                     gross, ratingValue, ratingCount and
+ *                                     duration as Strings, then the genres,
+ *                                     countries, cast, characters and directors
+ *                                     as an int count and dictionary ids
+ * int[n]  the position of each record, at the end of the file
+ * </pre>
+ *
+ * A String is stored as its int length in UTF-8 bytes, -1 for null, followed
+ * by the bytes. Currencies are stored as dictionary ids.
+ */
+public class MovieSnapshot {
+
+  /**
+   * The name of the snapshot in the movies directory.
+   */
+  public static final String FILE_NAME = "movies.snapshot";
+
+  static final int MAGIC = 0x494d4453;
+  static final int VERSION = 2;
+
+  private static final int HEADER = 24;
+
+  // the fields of a record, in the order they are stored
+  static final int URL = 0;
+  static final int TITLE = 1;
+  static final int YEAR = 2;
+  static final int DESCRIPTION = 3;
+  static final int BUDGET = 4;
+  static final int GROSS = 5;
+  static final int RATING_VALUE = 6;
+  static final int RATING_COUNT = 7;
+  static final int DURATION = 8;
+  static final int GENRES = 9;
+  static final int COUNTRIES = 10;
+  static final int CAST = 11;
+  static final int CHARACTERS = 12;
+  static final int DIRECTORS = 13;
+
+  private final ByteBuffer buffer;
+  private final int size;
+  // dictionary id -> id in the global SymbolTable, and its String
+  private final int[] symbols;
+  private final String[] strings;
+  private final int year;
+  private final int rating;
+  private final int voteCount;
+  private final int budget;
+  private final int gross;
+  private final int budgetCurrency;
+  private final int grossCurrency;
+  private final int duration;
+  private final int offsets;
+
+  private MovieSnapshot(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a movie snapshot");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported snapshot version " + buffer.getInt(4));
+    }
+    this.size = buffer.getInt(8);
+    int d = buffer.getInt(12);
+    SymbolTable global = SymbolTable.global();
+    this.symbols = new int[d];
+    this.strings = new String[d];
+    int pos = HEADER;
+    for (int id = 0; id < d; id++) {
+      String value = readString(pos);
+      pos += 4 + Math.max(0, buffer.getInt(pos));
+      this.symbols[id] = global.intern(value);
+      this.strings[id] = global.get(this.symbols[id]);
+    }
+    int n = this.size;
+    this.year = pos;
+    this.rating = this.year + 4 * n;
+    this.voteCount = this.rating + 4 * n;
+    this.budget = this.voteCount + 4 * n;
+    this.gross = this.budget + 8 * n;
+    this.budgetCurrency = this.gross + 8 * n;
+    this.grossCurrency = this.budgetCurrency + 4 * n;
+    this.duration = this.grossCurrency + 4 * n;
+    this.offsets = buffer.limit() - 4 * n;
+    if (this.duration + 4 * n > this.offsets) {
+      throw new IOException("Truncated movie snapshot");
+    }
+  }
+
+  /**
+   * Map a snapshot into memory.
+   *
+   * @param file
+   *          The snapshot
+   * @return The snapshot
+   * @throws IOException
+   *           if the file is no snapshot or has another version
+   */
+  public static MovieSnapshot open(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(),
+        StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot too large to map: " + file);
+      }
+      // the mapping stays valid after the channel is closed
+      return new MovieSnapshot(
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Fingerprint the JSON files and segments of a directory by their names,
+   * sizes and modification times. Taken before the movies are read, it
+   * identifies the state of the directory they were read from.
+   *
+   * @param moviesDir
+   *          The directory of the JSON files or segments
+   * @return The fingerprint
+   * @throws IOException
+   *           if 'moviesDir' is not a directory
+   */
+  public static long fingerprint(File moviesDir) throws IOException {
+    File[] inputs = moviesDir.listFiles((dir, name) -> name.endsWith(".json")
+        || MovieSegmentWriter.isSegment(name));
+    if (inputs == null) {
+      throw new IOException("Not a directory: " + moviesDir);
+    }
+    Arrays.sort(inputs);
+    long hash = inputs.length;
+    for (File input : inputs) {
+      hash = mix(hash, input.getName().hashCode());
+      hash = mix(hash, input.length());
+      hash = mix(hash, input.lastModified());
+    }
+    return hash;
+  }
+
+  private static long mix(long hash, long value) {
+    hash = (hash ^ value) * 0x9e3779b97f4a7c15L;
+    return hash ^ (hash >>> 32);
+  }
+
+  /**
+   * Compare the fingerprint stored in a snapshot with the current one of the
+   * directory. Unlike modification times of the snapshot and the directory,
+   * which the move of a new snapshot into the directory changes, this does not
+   * depend on the order of writes.
+   *
+   * @param file
+   *          The snapshot
+   * @param moviesDir
+   *          The directory of the JSON files or segments it was written from
+   * @return true if the snapshot exists and was written from the current JSON
+   *         files and segments of the directory
+   */
+  public static boolean isCurrent(File file, File moviesDir) {
+    try (FileChannel channel = FileChannel.open(file.toPath(),
+        StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        continue;
+      }
+      return !header.hasRemaining() && header.getInt(0) == MAGIC
+          && header.getInt(4) == VERSION
+          && header.getLong(16) == fingerprint(moviesDir);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Write a snapshot of 'movies'. The snapshot is written to a temporary file
+   * first and then moved to 'file', so readers never see a partial snapshot.
+   *
+   * @param movies
+   *          The movies, normalized by MovieReader
+   * @param file
+   *          The snapshot
+   * @param sources
+   *          The fingerprint of the files the movies were read from, taken
+   *          before they were read
+   * @throws IOException
+   */
+  public static void write(List<Movie> movies, File file, long sources)
+      throws IOException {
+    int n = movies.size();
+    StringDictionary dictionary = new StringDictionary();
+    int[] budgetCurrencies = new int[n];
+    int[] grossCurrencies = new int[n];
+    for (int i = 0; i < n; i++) {
+      Movie movie = movies.get(i);
+      budgetCurrencies[i] = dictionary.add(movie.getBudgetCurrency());
+      grossCurrencies[i] = dictionary.add(movie.getGrossCurrency());
+      addAll(dictionary, movie.getGenreList());
+      addAll(dictionary, movie.getCountryList());
+      addAll(dictionary, movie.getCastList());
+      addAll(dictionary, movie.getCharacterList());
+      addAll(dictionary, movie.getDirectorList());
+    }
+
+    File tmp = new File(file.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(n);
+      out.writeInt(dictionary.size());
+      out.writeLong(sources);
+      for (int id = 0; id < dictionary.size(); id++) {
+        writeString(out, dictionary.get(id));
+      }
+      for (Movie movie : movies) {
+        out.writeInt(movie.getYearNumber());
+      }
+      for (Movie movie : movies) {
+        out.writeFloat(movie.getRating());
+      }
+      for (Movie movie : movies) {
+        out.writeInt(movie.getVoteCount());
+      }
+      for (Movie movie : movies) {
+        out.writeLong(movie.getBudgetAmount());
+      }
+      for (Movie movie : movies) {
+        out.writeLong(movie.getGrossAmount());
+      }
+      for (int id : budgetCurrencies) {
+        out.writeInt(id);
+      }
+      for (int id : grossCurrencies) {
+        out.writeInt(id);
+      }
+      for (Movie movie : movies) {
+        out.writeInt(movie.getDurationMinutes());
+      }
+
+      int[] offsets = new int[n];
+      for (int i = 0; i < n; i++) {
+        offsets[i] = out.size();
+        Movie movie = movies.get(i);
+        writeString(out, movie.getUrl());
+        writeString(out, movie.getTitle());
+        writeString(out, movie.getYear());
+        writeString(out, movie.getDescription());
+        writeString(out, movie.getBudget());
+        writeString(out, movie.getGross());
+        writeString(out, movie.getRatingValue());
+        writeString(out, movie.getRatingCount());
+        writeString(out, movie.getDuration());
+        writeIds(out, dictionary, movie.getGenreList());
+        writeIds(out, dictionary, movie.getCountryList());
+        writeIds(out, dictionary, movie.getCastList());
+        writeIds(out, dictionary, movie.getCharacterList());
+        writeIds(out, dictionary, movie.getDirectorList());
+        // DataOutputStream counts in an int, which wraps at 2 GB
+        if (out.size() < 0) {
+          throw new IOException("Snapshot too large: " + file);
+        }
+      }
+      for (int offset : offsets) {
+        out.writeInt(offset);
+      }
+    }
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void addAll(StringDictionary dictionary, List<String> values) {
+    for (String value : values) {
+      dictionary.add(value);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value)
+      throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static void writeIds(DataOutputStream out,
+      StringDictionary dictionary, List<String> values) throws IOException {
+    out.writeInt(values.size());
+    for (String value : values) {
+      out.writeInt(dictionary.lookup(value));
+    }
+  }
+
+  /**
+   *
+   * @return The number of movies
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Decode all movies.
+   *
+   * @return The movies in the order they were written
+   */
+  public List<Movie> getMovies() {
+    List<Movie> movies = new ArrayList<>(this.size);
+    for (int i = 0; i < this.size; i++) {
+      movies.add(getMovie(i));
+    }
+    return movies;
+  }
+
+  /**
+   * Decode a movie. Its normalized values are taken from the columns and its
+   * list ids from the dictionary, so it does not have to be normalized again.
+   *
+   * @param i
+   *          The index of the movie
+   * @return The movie
+   */
+  public Movie getMovie(int i) {
+    HeapMovie movie = new HeapMovie();
+    int pos = this.buffer.getInt(this.offsets + 4 * i);
+    movie.setUrl(readString(pos));
+    pos = skipString(pos);
+    movie.setTitle(readString(pos));
+    pos = skipString(pos);
+    movie.setYear(readString(pos));
+    pos = skipString(pos);
+    movie.setDescription(readString(pos));
+    pos = skipString(pos);
+    movie.setBudget(readString(pos));
+    pos = skipString(pos);
+    movie.setGross(readString(pos));
+    pos = skipString(pos);
+    movie.setRatingValue(readString(pos));
+    pos = skipString(pos);
+    movie.setRatingCount(readString(pos));
+    pos = skipString(pos);
+    movie.setDuration(readString(pos));
+    pos = skipString(pos);
+    movie.setGenreList(readList(pos));
+    movie.setGenreIds(readIds(pos));
+    pos = skipIds(pos);
+    movie.setCountryList(readList(pos));
+    movie.setCountryIds(readIds(pos));
+    pos = skipIds(pos);
+    movie.setCastList(readList(pos));
+    movie.setCastIds(readIds(pos));
+    pos = skipIds(pos);
+    movie.setCharacterList(readList(pos));
+    movie.setCharacterIds(readIds(pos));
+    pos = skipIds(pos);
+    movie.setDirectorList(readList(pos));
+    movie.setDirectorIds(readIds(pos));
+
+    movie.setYearNumber(getYearNumber(i));
+    movie.setRating(getRating(i));
+    movie.setVoteCount(getVoteCount(i));
+    movie.setBudgetAmount(getBudgetAmount(i));
+    movie.setGrossAmount(getGrossAmount(i));
+    movie.setBudgetCurrency(getBudgetCurrency(i));
+    movie.setGrossCurrency(getGrossCurrency(i));
+    movie.setDurationMinutes(getDurationMinutes(i));
+    return movie;
+  }
+
+  /**
+   * The movies as views, which decode their fields from the mapping on each
+   * access instead of holding them on the heap.
+   *
+   * @return The movies in the order they were written
+   * @see MappedMovie
+   */
+  public List<Movie> getMovieViews() {
+    return new AbstractList<Movie>() {
+      @Override
+      public Movie get(int i) {
+        if (i < 0 || i >= MovieSnapshot.this.size) {
+          throw new IndexOutOfBoundsException("Index: " + i);
+        }
+        return new MappedMovie(MovieSnapshot.this, i);
+      }
+
+      @Override
+      public int size() {
+        return MovieSnapshot.this.size;
+      }
+    };
+  }
+
+  String getString(int i, int field) {
+    return readString(position(i, field));
+  }
+
+  List<String> getList(int i, int field) {
+    return readList(position(i, field));
+  }
+
+  int[] getIds(int i, int field) {
+    return readIds(position(i, field));
+  }
+
+  int getYearNumber(int i) {
+    return this.buffer.getInt(this.year + 4 * i);
+  }
+
+  float getRating(int i) {
+    return this.buffer.getFloat(this.rating + 4 * i);
+  }
+
+  int getVoteCount(int i) {
+    return this.buffer.getInt(this.voteCount + 4 * i);
+  }
+
+  long getBudgetAmount(int i) {
+    return this.buffer.getLong(this.budget + 8 * i);
+  }
+
+  long getGrossAmount(int i) {
+    return this.buffer.getLong(this.gross + 8 * i);
+  }
+
+  String getBudgetCurrency(int i) {
+    return this.strings[this.buffer.getInt(this.budgetCurrency + 4 * i)];
+  }
+
+  String getGrossCurrency(int i) {
+    return this.strings[this.buffer.getInt(this.grossCurrency + 4 * i)];
+  }
+
+  int getDurationMinutes(int i) {
+    return this.buffer.getInt(this.duration + 4 * i);
+  }
+
+  /**
+   * @return The position of a field of the i-th record
+   */
+  private int position(int i, int field) {
+    int pos = this.buffer.getInt(this.offsets + 4 * i);
+    for (int f = 0; f < field; f++) {
+      pos = f < GENRES ? skipString(pos) : skipIds(pos);
+    }
+    return pos;
+  }
+
+  private String readString(int pos) {
+    int length = this.buffer.getInt(pos);
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    // a duplicate has its own position, so concurrent readers do not interfere
+    ByteBuffer view = this.buffer.duplicate();
+    view.position(pos + 4);
+    view.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private int skipString(int pos) {
+    return pos + 4 + Math.max(0, this.buffer.getInt(pos));
+  }
+
+  private List<String> readList(int pos) {
+    int count = this.buffer.getInt(pos);
+    String[] values = new String[count];
+    for (int k = 0; k < count; k++) {
+      values[k] = this.strings[this.buffer.getInt(pos + 4 + 4 * k)];
+    }
+    return new ArrayList<>(Arrays.asList(values));
+  }
+
+  private int[] readIds(int pos) {
+    int count = this.buffer.getInt(pos);
+    int[] ids = new int[count];
+    for (int k = 0; k < count; k++) {
+      ids[k] = this.symbols[this.buffer.getInt(pos + 4 + 4 * k)];
+    }
+    return ids;
+  }
+
+  private int skipIds(int pos) {
+    return pos + 4 + 4 * this.buffer.getInt(pos);
+  }
+}
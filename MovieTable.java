@@ -0,0 +1,234 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A column-oriented copy of a list of movies. Row 'i' of every column belongs
+ * to the i-th movie of the list. Numeric attributes are stored in primitive
+ * arrays, list attributes as dictionary-encoded ids, so that filters can scan
+ * the columns without touching the Movie objects.
+ */
+public class MovieTable {
+
+  /**
+   * A dictionary-encoded list attribute. The ids of row 'i' are stored in
+   * values[offsets[i]] to values[offsets[i + 1] - 1].
+   */
+  public static class ListColumn {
+    private final StringDictionary dictionary = new StringDictionary();
+    private final int[] offsets;
+    private final int[] values;
+
+    ListColumn(List<Movie> movies, Function<Movie, int[]> attribute) {
+      this.offsets = new int[movies.size() + 1];
+      int total = 0;
+      for (int i = 0; i < movies.size(); i++) {
+        total += attribute.apply(movies.get(i)).length;
+        this.offsets[i + 1] = total;
+      }
+      this.values = new int[total];
+      SymbolTable symbols = SymbolTable.global();
+      int pos = 0;
+      for (Movie movie : movies) {
+        for (int symbol : attribute.apply(movie)) {
+          this.values[pos++] = this.dictionary.add(symbols.get(symbol));
+        }
+      }
+    }
+
+    /**
+     * 
+     * @return The dictionary of the column
+     */
+    public StringDictionary getDictionary() {
+      return this.dictionary;
+    }
+
+    /**
+     * 
+     * @return The start offset of each row in getValues(), followed by the
+     *         total number of values
+     */
+    public int[] getOffsets() {
+      return this.offsets;
+    }
+
+    /**
+     * 
+     * @return The ids of all rows, concatenated
+     */
+    public int[] getValues() {
+      return this.values;
+    }
+
+    /**
+     * 
+     * @param row
+     *          The row
+     * @param id
+     *          The id to look for
+     * @return true if row 'row' contains 'id'
+     */
+    public boolean contains(int row, int id) {
+      for (int i = this.offsets[row]; i < this.offsets[row + 1]; i++) {
+        if (this.values[i] == id) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private final List<Movie> movies;
+  private final int[] year;
+  private final float[] rating;
+  private final int[] voteCount;
+  private final long[] budget;
+  private final long[] gross;
+  private final int[] duration;
+  private final StringDictionary currencies = new StringDictionary();
+  private final int[] budgetCurrency;
+  private final int[] grossCurrency;
+  private final ListColumn genres;
+  private final ListColumn countries;
+
+  /**
+   * Build the columns from a list of movies.
+   *
+   * @param movies
+   *          The movies
+   */
+  public MovieTable(List<Movie> movies) {
+    int n = movies.size();
+    this.movies = movies;
+    this.year = new int[n];
+    this.rating = new float[n];
+    this.voteCount = new int[n];
+    this.budget = new long[n];
+    this.gross = new long[n];
+    this.duration = new int[n];
+    this.budgetCurrency = new int[n];
+    this.grossCurrency = new int[n];
+    for (int i = 0; i < n; i++) {
+      Movie movie = movies.get(i);
+      this.year[i] = movie.getYearNumber();
+      this.rating[i] = movie.getRating();
+      this.voteCount[i] = movie.getVoteCount();
+      this.budget[i] = movie.getBudgetAmount();
+      this.gross[i] = movie.getGrossAmount();
+      this.duration[i] = movie.getDurationMinutes();
+      this.budgetCurrency[i] = this.currencies.add(movie.getBudgetCurrency());
+      this.grossCurrency[i] = this.currencies.add(movie.getGrossCurrency());
+    }
+    // read as SymbolTable ids, which a snapshot view does not decode
+    this.genres = new ListColumn(movies, Movie::getGenreIds);
+    this.countries = new ListColumn(movies, Movie::getCountryIds);
+  }
+
+  /**
+   * 
+   * @return The number of rows
+   */
+  public int size() {
+    return this.year.length;
+  }
+
+  /**
+   * 
+   * @param row
+   *          The row
+   * @return The movie of the row
+   */
+  public Movie getMovie(int row) {
+    return this.movies.get(row);
+  }
+
+  /**
+   * 
+   * @return The year column
+   */
+  public int[] getYear() {
+    return this.year;
+  }
+
+  /**
+   * 
+   * @return The rating column
+   */
+  public float[] getRating() {
+    return this.rating;
+  }
+
+  /**
+   * 
+   * @return The vote count column
+   */
+  public int[] getVoteCount() {
+    return this.voteCount;
+  }
+
+  /**
+   * 
+   * @return The budget column
+   */
+  public long[] getBudget() {
+    return this.budget;
+  }
+
+  /**
+   * 
+   * @return The gross column
+   */
+  public long[] getGross() {
+    return this.gross;
+  }
+
+  /**
+   * 
+   * @return The duration column, in minutes
+   */
+  public int[] getDuration() {
+    return this.duration;
+  }
+
+  /**
+   * 
+   * @return The dictionary of the currency columns
+   */
+  public StringDictionary getCurrencies() {
+    return this.currencies;
+  }
+
+  /**
+   * 
+   * @return The budget currency column
+   */
+  public int[] getBudgetCurrency() {
+    return this.budgetCurrency;
+  }
+
+  /**
+   * 
+   * @return The gross currency column
+   */
+  public int[] getGrossCurrency() {
+    return this.grossCurrency;
+  }
+
+  /**
+   * 
+   * @return The genres column
+   */
+  public ListColumn getGenres() {
+    return this.genres;
+  }
+
+  /**
+   * 
+   * @return The countries column
+   */
+  public ListColumn getCountries() {
+    return this.countries;
+  }
+}
@@ -0,0 +1,177 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An on-disk cache of fetched pages, keyed by URL: each page is stored in a
+ * file named by the SHA-256 hash of its URL (not of its content), together
+ * with the URL and the time it was fetched. Pages older than the time-to-live
+ * count as missing, and the least recently used pages are deleted once the
+ * cache exceeds its size limit. In offline mode, every cached page is served
+ * regardless of its age and a missing page is an error, so a crawl can be
+ * replayed without network access.
+ */
+public class PageCache {
+
+	/**
+	 * Thrown in offline mode for a page that is not cached. Fetching it again
+	 * cannot succeed, so it must not be retried.
+	 */
+	public static class NotCachedException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		NotCachedException(String url) {
+			super("Page not cached (offline mode): " + url);
+		}
+	}
+
+	private static final String SUFFIX = ".page";
+	private static final String TMP_PREFIX = "page";
+	private static final String TMP_SUFFIX = ".tmp";
+
+	private final File dir;
+	private final long ttlMillis;
+	private final long maxBytes;
+	private final boolean offline;
+	// file name -> file size, in access order
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalBytes;
+
+	/**
+	 * @param dir
+	 *            the cache directory, created if necessary
+	 * @param ttlMillis
+	 *            the time after which a page is fetched again
+	 * @param maxBytes
+	 *            the maximum total size of the cached pages
+	 * @param offline
+	 *            whether to serve only cached pages
+	 * @throws IOException
+	 */
+	public PageCache(File dir, long ttlMillis, long maxBytes, boolean offline) throws IOException {
+		this.dir = dir;
+		this.ttlMillis = ttlMillis;
+		this.maxBytes = maxBytes;
+		this.offline = offline;
+		Files.createDirectories(dir.toPath());
+		// pages a previous run was still writing when it stopped
+		File[] stale = dir.listFiles((d, name) -> name.startsWith(TMP_PREFIX) && name.endsWith(TMP_SUFFIX));
+		for (File f : stale) {
+			Files.deleteIfExists(f.toPath());
+		}
+		File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File f : files) {
+			this.entries.put(f.getName(), f.length());
+			this.totalBytes += f.length();
+		}
+	}
+
+	/**
+	 * @return true if only cached pages are served
+	 */
+	public boolean isOffline() {
+		return this.offline;
+	}
+
+	/**
+	 * @param url
+	 *            the URL
+	 * @return the cached page, or null if it is missing or expired
+	 * @throws NotCachedException
+	 *             if the page is missing in offline mode
+	 * @throws IOException
+	 */
+	public String get(String url) throws IOException {
+		String name = fileName(url);
+		File f = new File(this.dir, name);
+		synchronized (this) {
+			if (this.entries.get(name) == null) {
+				return miss(url);
+			}
+			f.setLastModified(System.currentTimeMillis());
+		}
+		String content;
+		try {
+			content = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return miss(url);
+		}
+		try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+			long fetched = Long.parseLong(reader.readLine());
+			String cachedUrl = reader.readLine();
+			if (!url.equals(cachedUrl)
+					|| (!this.offline && System.currentTimeMillis() - fetched > this.ttlMillis)) {
+				return miss(url);
+			}
+			int header = content.indexOf('\n', content.indexOf('\n') + 1) + 1;
+			return content.substring(header);
+		} catch (NumberFormatException | NullPointerException e) {
+			return miss(url);
+		}
+	}
+
+	/**
+	 * Store a fetched page, evicting the least recently used pages if the cache
+	 * grows beyond its size limit.
+	 *
+	 * @param url
+	 *            the URL
+	 * @param page
+	 *            the page content
+	 * @throws IOException
+	 */
+	public void put(String url, String page) throws IOException {
+		String name = fileName(url);
+		byte[] content = (System.currentTimeMillis() + "\n" + url + "\n" + page).getBytes(StandardCharsets.UTF_8);
+		File tmp = File.createTempFile(TMP_PREFIX, TMP_SUFFIX, this.dir);
+		Files.write(tmp.toPath(), content);
+		synchronized (this) {
+			Files.move(tmp.toPath(), new File(this.dir, name).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			Long old = this.entries.put(name, (long) content.length);
+			this.totalBytes += content.length - (old == null ? 0 : old);
+			Iterator<Map.Entry<String, Long>> eldest = this.entries.entrySet().iterator();
+			while (this.totalBytes > this.maxBytes && eldest.hasNext()) {
+				Map.Entry<String, Long> entry = eldest.next();
+				if (entry.getKey().equals(name)) {
+					continue;
+				}
+				Files.deleteIfExists(new File(this.dir, entry.getKey()).toPath());
+				this.totalBytes -= entry.getValue();
+				eldest.remove();
+			}
+		}
+	}
+
+	private String miss(String url) throws NotCachedException {
+		if (this.offline) {
+			throw new NotCachedException(url);
+		}
+		return null;
+	}
+
+	private static String fileName(String url) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder(hash.length * 2 + SUFFIX.length());
+			for (byte b : hash) {
+				name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return name.append(SUFFIX).toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
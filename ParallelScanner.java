@@ -0,0 +1,131 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs a {@link MovieScan} over a list of movies in a fork-join pool. The list
+ * is cut into ceil(size / partSize) consecutive parts of partSize movies, the
+ * last one possibly shorter. The parts are handed out by splitting the range
+ * of parts in halves, every part is scanned into its own partial aggregate,
+ * and the partial aggregates are merged pairwise in list order on the way
+ * back up. Lists up to the threshold are scanned sequentially on the calling
+ * thread.
+ */
+public class ParallelScanner {
+
+  /**
+   * The default number of movies up to which a list is scanned sequentially,
+   * and the smallest size of a part.
+   */
+  static final int DEFAULT_THRESHOLD = 4096;
+
+  /**
+   * The number of parts per worker thread; a few more parts than threads
+   * balance parts of different cost, while every part costs a partial
+   * aggregate.
+   */
+  static final int PARTS_PER_THREAD = 2;
+
+  private final ForkJoinPool pool;
+  private final int threshold;
+
+  /**
+   * A scanner using the common pool and the default threshold.
+   */
+  public ParallelScanner() {
+    this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+  }
+
+  /**
+   *
+   * @param pool
+   *          The pool the parts are scanned in
+   * @param threshold
+   *          The number of movies up to which a list is scanned sequentially
+   */
+  public ParallelScanner(ForkJoinPool pool, int threshold) {
+    this.pool = pool;
+    this.threshold = Math.max(1, threshold);
+  }
+
+  /**
+   *
+   * @return The pool the parts are scanned in
+   */
+  public ForkJoinPool getPool() {
+    return this.pool;
+  }
+
+  /**
+   * Scan 'movies'.
+   *
+   * @param movies
+   *          The movies
+   * @param scan
+   *          The query
+   * @return The result of the query
+   */
+  public <P, R> R scan(List<Movie> movies, MovieScan<P, R> scan) {
+    if (movies.size() <= this.threshold) {
+      return scan.finish(scanPart(movies, scan, 0, movies.size()));
+    }
+    List<Movie> list = movies instanceof RandomAccess ? movies
+        : new ArrayList<>(movies);
+    int parts = PARTS_PER_THREAD * this.pool.getParallelism();
+    int partSize = Math.max(this.threshold, (list.size() + parts - 1) / parts);
+    int count = (list.size() + partSize - 1) / partSize;
+    return scan.finish(
+        this.pool.invoke(new ScanTask<>(list, scan, partSize, 0, count)));
+  }
+
+  static <P> P scanPart(List<Movie> movies, MovieScan<P, ?> scan, int from,
+      int to) {
+    P partial = scan.newPartial();
+    for (int i = from; i < to; i++) {
+      scan.accept(partial, movies.get(i));
+    }
+    return partial;
+  }
+
+  /**
+   * Scans the parts [from, to) of the list.
+   */
+  private static class ScanTask<P> extends RecursiveTask<P> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Movie> movies;
+    private final MovieScan<P, ?> scan;
+    private final int partSize;
+    private final int from;
+    private final int to;
+
+    ScanTask(List<Movie> movies, MovieScan<P, ?> scan, int partSize, int from,
+        int to) {
+      this.movies = movies;
+      this.scan = scan;
+      this.partSize = partSize;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected P compute() {
+      if (this.to - this.from == 1) {
+        int start = this.from * this.partSize;
+        return scanPart(this.movies, this.scan, start,
+            Math.min(this.movies.size(), start + this.partSize));
+      }
+      int mid = (this.from + this.to) >>> 1;
+      ScanTask<P> left = new ScanTask<>(this.movies, this.scan, this.partSize,
+          this.from, mid);
+      left.fork();
+      P right = new ScanTask<>(this.movies, this.scan, this.partSize, mid,
+          this.to).compute();
+      return this.scan.merge(left.join(), right);
+    }
+  }
+}
@@ -0,0 +1,190 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps each person, by id in the global SymbolTable, to the sorted positions
+ * of the movies in which the person appears in a role, so that questions
+ * across roles are answered by merging two sorted lists instead of comparing
+ * every movie's cast with its directors.
+ *
+ * A cast member has the role VOICE as well if the character played, at the
+ * same position of the character list, is a voice role.
+ */
+public class PersonRoleIndex implements MovieIndex {
+
+  /**
+   * The roles of a person in a movie.
+   */
+  public enum Role {
+    CAST, DIRECTOR, VOICE
+  }
+
+  private static final int[] NONE = new int[0];
+
+  // role -> person id -> sorted movie positions, or null
+  private final IntList[][] postings = new IntList[Role.values().length][];
+
+  /**
+   * Index the cast, directors and voice roles of 'movies'.
+   *
+   * @param movies
+   *          The movies
+   */
+  public PersonRoleIndex(List<Movie> movies) {
+    int persons = SymbolTable.global().size();
+    for (int role = 0; role < this.postings.length; role++) {
+      this.postings[role] = new IntList[persons];
+    }
+    for (int id = 0; id < movies.size(); id++) {
+      add(id, movies.get(id));
+    }
+  }
+
+  @Override
+  public void add(int id, Movie movie) {
+    int[] cast = movie.getCastIds();
+    List<String> characters = movie.getCharacterList();
+    for (int i = 0; i < cast.length; i++) {
+      add(Role.CAST, cast[i], id);
+      if (i < characters.size() && isVoice(characters.get(i))) {
+        add(Role.VOICE, cast[i], id);
+      }
+    }
+    for (int director : movie.getDirectorIds()) {
+      add(Role.DIRECTOR, director, id);
+    }
+  }
+
+  @Override
+  public void remove(int id, Movie movie) {
+    for (Role role : Role.values()) {
+      int[] persons = role == Role.DIRECTOR ? movie.getDirectorIds()
+          : movie.getCastIds();
+      for (int person : persons) {
+        IntList movies = list(role, person);
+        if (movies != null) {
+          int i = movies.binarySearch(id);
+          if (i >= 0) {
+            movies.remove(i, i + 1);
+          }
+          if (movies.size() == 0) {
+            this.postings[role.ordinal()][person] = null;
+          }
+        }
+      }
+    }
+  }
+
+  private void add(Role role, int person, int id) {
+    IntList[] lists = this.postings[role.ordinal()];
+    if (person >= lists.length) {
+      lists = Arrays.copyOf(lists,
+          Math.max(person + 1, SymbolTable.global().size()));
+      this.postings[role.ordinal()] = lists;
+    }
+    if (lists[person] == null) {
+      lists[person] = new IntList(4);
+    }
+    IntList movies = lists[person];
+    // movies are indexed in ascending order, except while the list changes
+    if (movies.size() == 0 || movies.last() < id) {
+      movies.add(id);
+    } else {
+      int i = movies.binarySearch(id);
+      if (i < 0) {
+        movies.insert(-i - 1, id);
+      }
+    }
+  }
+
+  private IntList list(Role role, int person) {
+    IntList[] lists = this.postings[role.ordinal()];
+    return person >= 0 && person < lists.length ? lists[person] : null;
+  }
+
+  private static boolean isVoice(String character) {
+    int length = "voice".length();
+    for (int i = 0; i + length <= character.length(); i++) {
+      if (character.regionMatches(true, i, "voice", 0, length)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   *
+   * @return One more than the largest person id that may have movies
+   */
+  public int personLimit() {
+    int limit = 0;
+    for (IntList[] lists : this.postings) {
+      limit = Math.max(limit, lists.length);
+    }
+    return limit;
+  }
+
+  /**
+   *
+   * @param person
+   *          The id of the person
+   * @param role
+   *          The role
+   * @return The number of movies in which the person has the role
+   */
+  public int count(int person, Role role) {
+    IntList movies = list(role, person);
+    return movies == null ? 0 : movies.size();
+  }
+
+  /**
+   *
+   * @param person
+   *          The id of the person
+   * @param role
+   *          The role
+   * @return The sorted positions of the movies in which the person has the
+   *         role
+   */
+  public int[] movies(int person, Role role) {
+    IntList movies = list(role, person);
+    return movies == null ? NONE : movies.toArray();
+  }
+
+  /**
+   *
+   * @param person
+   *          The id of the person
+   * @param a
+   *          A role
+   * @param b
+   *          Another role
+   * @return The sorted positions of the movies in which the person has both
+   *         roles
+   */
+  public int[] movies(int person, Role a, Role b) {
+    IntList left = list(a, person);
+    IntList right = list(b, person);
+    if (left == null || right == null) {
+      return NONE;
+    }
+    int[] result = new int[Math.min(left.size(), right.size())];
+    int n = 0;
+    for (int i = 0, j = 0; i < left.size() && j < right.size();) {
+      int x = left.get(i);
+      int y = right.get(j);
+      if (x < y) {
+        i++;
+      } else if (x > y) {
+        j++;
+      } else {
+        result[n++] = x;
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, n);
+  }
+}
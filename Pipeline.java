@@ -0,0 +1,187 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A chain of stages connected by bounded queues. Every stage runs on its own
+ * number of threads and passes each item to the next stage once it has
+ * processed it. When a queue is full, the stage before it blocks, so a slow
+ * stage throttles the stages before it instead of letting items pile up.
+ *
+ * @param <T>
+ *            the type of the items
+ */
+public class Pipeline<T> {
+
+	/**
+	 * One step of the pipeline.
+	 *
+	 * @param <T>
+	 *            the type of the items
+	 */
+	public interface Stage<T> {
+		void process(T item) throws IOException;
+	}
+
+	private static class StageSpec<T> {
+		final String name;
+		final int parallelism;
+		final Stage<T> stage;
+
+		StageSpec(String name, int parallelism, Stage<T> stage) {
+			this.name = name;
+			this.parallelism = parallelism;
+			this.stage = stage;
+		}
+	}
+
+	// marks the end of the items in a queue
+	private static final Object END = new Object();
+
+	private final List<StageSpec<T>> stages = new ArrayList<>();
+	private final int capacity;
+
+	/**
+	 * @param capacity
+	 *            the capacity of the queue in front of each stage
+	 */
+	public Pipeline(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Append a stage.
+	 *
+	 * @param name
+	 *            the name of the stage, used for its threads
+	 * @param parallelism
+	 *            the number of threads running the stage
+	 * @param stage
+	 *            the stage
+	 * @return this pipeline
+	 */
+	public Pipeline<T> stage(String name, int parallelism, Stage<T> stage) {
+		this.stages.add(new StageSpec<>(name, parallelism, stage));
+		return this;
+	}
+
+	/**
+	 * Pass all items through the stages and wait until the last stage has
+	 * processed them. If a stage fails, the pipeline is stopped and the failure
+	 * is rethrown once all threads have stopped.
+	 *
+	 * @param items
+	 *            the items
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public void run(Iterable<T> items) throws IOException {
+		List<BlockingQueue<Object>> queues = new ArrayList<>();
+		int threads = 0;
+		for (StageSpec<T> spec : this.stages) {
+			queues.add(new ArrayBlockingQueue<>(this.capacity));
+			threads += spec.parallelism;
+		}
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		for (int s = 0; s < this.stages.size(); s++) {
+			StageSpec<T> spec = this.stages.get(s);
+			BlockingQueue<Object> in = queues.get(s);
+			BlockingQueue<Object> out = s + 1 < queues.size() ? queues.get(s + 1) : null;
+			AtomicInteger running = new AtomicInteger(spec.parallelism);
+			for (int w = 0; w < spec.parallelism; w++) {
+				String threadName = spec.name + "-" + w;
+				executor.execute(() -> {
+					Thread.currentThread().setName(threadName);
+					try {
+						for (Object item = in.take(); item != END; item = in.take()) {
+							spec.stage.process((T) item);
+							if (out != null) {
+								out.put(item);
+							}
+						}
+						in.put(END); // for the other threads of this stage
+						if (running.decrementAndGet() == 0 && out != null) {
+							out.put(END);
+						}
+					} catch (InterruptedException e) {
+						// the pipeline was stopped
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+						executor.shutdownNow();
+					}
+				});
+			}
+		}
+
+		try {
+			BlockingQueue<Object> first = queues.get(0);
+			for (T item : items) {
+				while (!first.offer(item, 100, TimeUnit.MILLISECONDS)) {
+					if (failure.get() != null) {
+						throw rethrow(failure.get());
+					}
+				}
+			}
+			first.put(END);
+			executor.shutdown();
+			while (!executor.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+				if (failure.get() != null) {
+					break;
+				}
+			}
+			if (failure.get() != null) {
+				throw rethrow(failure.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while running the pipeline");
+		} finally {
+			executor.shutdownNow();
+			awaitTermination(executor);
+		}
+	}
+
+	/**
+	 * Wait until the stopped threads have finished the item they were
+	 * processing, so that no stage touches shared state, such as an output
+	 * file, after run() returned.
+	 */
+	private static void awaitTermination(ExecutorService executor) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (executor.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static IOException rethrow(Throwable t) {
+		if (t instanceof IOException) {
+			return (IOException) t;
+		}
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		return new IOException(t);
+	}
+}
@@ -0,0 +1,431 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Answers {@link MovieQuery}s over a list of movies, choosing for each query
+ * between a full scan and the available indexes: the genre, country and year
+ * bitmaps of a {@link MovieBitmapIndex}, and the postings of a
+ * {@link DescriptionIndex} for text conditions.
+ *
+ * The planner estimates the number of movies each indexable condition selects.
+ * If even the most selective one keeps more than SCAN_SELECTIVITY of the
+ * movies, a scan is cheaper than jumping through the list. Otherwise that
+ * condition drives the plan, and every further indexable condition is
+ * answered from its index if that costs less than testing it on the movies
+ * found so far. The remaining conditions are tested on the candidates.
+ *
+ * Indexes are optional; without them, every query is a scan. A plan reads the
+ * indexes when it is executed, so it must not run while they change.
+ */
+public class QueryPlanner {
+
+  /**
+   * The largest fraction of the movies the driving index may select; above
+   * it, the movies are scanned.
+   */
+  static final double SCAN_SELECTIVITY = 0.25;
+
+  /**
+   * The number of movies a bitmap operation handles for the cost of testing
+   * one movie.
+   */
+  static final int BITMAP_BATCH = 64;
+
+  /**
+   * The largest number of keys per matching movie for which groups are
+   * aggregated in arrays over the whole key range; wider ranges are grouped
+   * in a sorted map.
+   */
+  static final int DENSE_KEYS_PER_ROW = 4;
+
+  private final List<Movie> movies;
+  private final MovieBitmapIndex bitmaps;
+  private final DescriptionIndex descriptions;
+
+  /**
+   * A planner that scans every query.
+   *
+   * @param movies
+   *          The movies
+   */
+  public QueryPlanner(List<Movie> movies) {
+    this(movies, null, null);
+  }
+
+  /**
+   *
+   * @param movies
+   *          The movies
+   * @param bitmaps
+   *          The bitmap index of 'movies', or null
+   * @param descriptions
+   *          The description index of 'movies', or null
+   */
+  public QueryPlanner(List<Movie> movies, MovieBitmapIndex bitmaps,
+      DescriptionIndex descriptions) {
+    this.movies = movies;
+    this.bitmaps = bitmaps;
+    this.descriptions = descriptions;
+  }
+
+  /**
+   * Plan and execute a query.
+   *
+   * @param query
+   *          The query
+   * @return The movies answering the query
+   */
+  public List<Movie> execute(MovieQuery query) {
+    return plan(query).execute();
+  }
+
+  /**
+   *
+   * @param query
+   *          The query
+   * @return The cheapest plan found for the query
+   */
+  public Plan plan(MovieQuery query) {
+    int n = this.movies.size();
+    List<Access> accesses = new ArrayList<>();
+    for (MovieQuery.Condition condition : query.getConditions()) {
+      Access access = access(condition);
+      if (access != null) {
+        accesses.add(access);
+      }
+    }
+    accesses.sort(Comparator.comparingInt(access -> access.estimate));
+
+    List<Access> chosen = new ArrayList<>();
+    double rows = n;
+    if (!accesses.isEmpty() && accesses.get(0).estimate < n * SCAN_SELECTIVITY) {
+      for (Access access : accesses) {
+        if (chosen.isEmpty() || access.cost < rows) {
+          chosen.add(access);
+          // conditions are assumed to be independent
+          rows = chosen.size() == 1 ? access.estimate
+              : rows * access.estimate / n;
+        }
+      }
+    }
+
+    List<MovieQuery.Condition> residual = new ArrayList<>(
+        query.getConditions());
+    for (Access access : chosen) {
+      residual.remove(access.condition);
+    }
+    return new Plan(query, chosen, residual, (long) Math.ceil(rows));
+  }
+
+  /**
+   * @return How an index answers 'condition', or null if none does
+   */
+  private Access access(MovieQuery.Condition condition) {
+    switch (condition.kind) {
+      case GENRE:
+        if (this.bitmaps == null) {
+          return null;
+        }
+        CompactBitmap genre = this.bitmaps.genre(condition.value);
+        return new Access(condition, genre.cardinality(), true);
+      case COUNTRY:
+        if (this.bitmaps == null) {
+          return null;
+        }
+        CompactBitmap country = this.bitmaps.country(condition.value);
+        return new Access(condition, country.cardinality(), true);
+      case RANGE:
+        if (this.bitmaps == null || condition.field != MovieQuery.Field.YEAR) {
+          return null;
+        }
+        return new Access(condition,
+            this.bitmaps.countYears(firstYear(condition), lastYear(condition)),
+            false);
+      case TEXT:
+      case TEXT_EXACT:
+        if (this.descriptions == null) {
+          return null;
+        }
+        return new Access(condition,
+            this.descriptions.estimateDocsContaining(condition.value), false);
+      default:
+        return null;
+    }
+  }
+
+  private static int firstYear(MovieQuery.Condition condition) {
+    return (int) Math.max(Integer.MIN_VALUE, Math.ceil(condition.min));
+  }
+
+  private static int lastYear(MovieQuery.Condition condition) {
+    return (int) Math.min(Integer.MAX_VALUE, Math.floor(condition.max));
+  }
+
+  /**
+   * An indexable condition with the estimated number of movies it selects.
+   * Prebuilt bitmaps are combined a word at a time; year ranges and text
+   * matches cost one step per selected movie to build.
+   */
+  private static class Access {
+    final MovieQuery.Condition condition;
+    final int estimate;
+    final double cost;
+
+    Access(MovieQuery.Condition condition, int estimate, boolean prebuilt) {
+      this.condition = condition;
+      this.estimate = estimate;
+      this.cost = prebuilt ? (double) estimate / BITMAP_BATCH : estimate;
+    }
+
+    boolean isBitmap() {
+      return this.condition.kind != MovieQuery.Kind.TEXT
+          && this.condition.kind != MovieQuery.Kind.TEXT_EXACT;
+    }
+  }
+
+  /**
+   * The way a query is answered: the indexes that select the candidates, or
+   * a scan if there are none, and the conditions tested on each candidate.
+   */
+  public class Plan {
+    private final MovieQuery query;
+    private final List<Access> accesses;
+    private final List<MovieQuery.Condition> residual;
+    private final long estimate;
+
+    Plan(MovieQuery query, List<Access> accesses,
+        List<MovieQuery.Condition> residual, long estimate) {
+      this.query = query;
+      this.accesses = accesses;
+      this.residual = residual;
+      this.estimate = estimate;
+    }
+
+    /**
+     *
+     * @return true if the plan reads all movies
+     */
+    public boolean isScan() {
+      return this.accesses.isEmpty();
+    }
+
+    /**
+     *
+     * @return The estimated number of candidates the indexes select
+     */
+    public long getEstimate() {
+      return this.estimate;
+    }
+
+    /**
+     *
+     * @return The movies answering the query
+     */
+    public List<Movie> execute() {
+      IntList rows = new IntList();
+      if (isScan()) {
+        for (int i = 0; i < QueryPlanner.this.movies.size(); i++) {
+          if (matches(QueryPlanner.this.movies.get(i))) {
+            rows.add(i);
+          }
+        }
+      } else {
+        for (int i : candidates()) {
+          if (matches(QueryPlanner.this.movies.get(i))) {
+            rows.add(i);
+          }
+        }
+      }
+      return shape(rows);
+    }
+
+    private boolean matches(Movie movie) {
+      for (MovieQuery.Condition condition : this.residual) {
+        if (!condition.test(movie)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * @return The sorted positions selected by all accesses
+     */
+    private int[] candidates() {
+      CompactBitmap bits = null;
+      int[] docs = null;
+      for (Access access : this.accesses) {
+        if (access.isBitmap()) {
+          CompactBitmap bitmap = bitmap(access.condition);
+          if (docs != null) {
+            docs = filter(docs, bitmap);
+          } else {
+            bits = bits == null ? bitmap : bits.and(bitmap);
+          }
+        } else {
+          int[] matching = docs(access.condition);
+          if (docs != null) {
+            docs = DescriptionIndex.intersect(docs, matching);
+          } else {
+            docs = bits == null ? matching : filter(matching, bits);
+            bits = null;
+          }
+        }
+      }
+      return docs != null ? docs : bits.toArray();
+    }
+
+    private CompactBitmap bitmap(MovieQuery.Condition condition) {
+      MovieBitmapIndex index = QueryPlanner.this.bitmaps;
+      switch (condition.kind) {
+        case GENRE:
+          return index.genre(condition.value);
+        case COUNTRY:
+          return index.country(condition.value);
+        default:
+          return index.years(firstYear(condition), lastYear(condition));
+      }
+    }
+
+    private int[] docs(MovieQuery.Condition condition) {
+      DescriptionIndex index = QueryPlanner.this.descriptions;
+      return condition.kind == MovieQuery.Kind.TEXT
+          ? index.docsContaining(condition.value)
+          : index.docsContainingExact(condition.value);
+    }
+
+    private int[] filter(int[] docs, CompactBitmap bitmap) {
+      int[] result = new int[docs.length];
+      int n = 0;
+      for (int doc : docs) {
+        if (bitmap.contains(doc)) {
+          result[n++] = doc;
+        }
+      }
+      return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Group, order and limit the matching positions, given in list order.
+     */
+    private List<Movie> shape(IntList rows) {
+      List<Movie> movies = QueryPlanner.this.movies;
+      MovieQuery.Field group = this.query.getGroupBy();
+      MovieQuery.Field order = this.query.getOrderBy();
+      boolean descending = this.query.isDescending();
+      int limit = this.query.getLimit();
+      List<Movie> result = new ArrayList<>();
+
+      if (group != null) {
+        if (rows.size() == 0) {
+          return result;
+        }
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < rows.size(); i++) {
+          long key = (long) group.get(movies.get(rows.get(i)));
+          min = Math.min(min, key);
+          max = Math.max(max, key);
+        }
+        // the span may overflow for keys far apart
+        long span = max - min;
+        if (span < 0 || min < Integer.MIN_VALUE || max > Integer.MAX_VALUE
+            || span >= (long) rows.size() * DENSE_KEYS_PER_ROW) {
+          return sparseGroups(rows, group, order, descending, limit);
+        }
+        GroupAggregator groups = new GroupAggregator((int) min, (int) max);
+        for (int i = 0; i < rows.size(); i++) {
+          Movie movie = movies.get(rows.get(i));
+          groups.add((int) group.get(movie), rows.get(i),
+              order == null ? 0 : order.get(movie));
+        }
+        for (long key = min; key <= max && result.size() < limit; key++) {
+          int row = descending ? groups.getArgMax((int) key)
+              : groups.getArgMin((int) key);
+          if (row >= 0) {
+            result.add(movies.get(row));
+          }
+        }
+        return result;
+      }
+
+      if (order != null) {
+        Comparator<Movie> byField = Comparator.comparingDouble(order::get);
+        if (descending) {
+          byField = byField.reversed();
+        }
+        if (limit < rows.size()) {
+          TopK<Movie> top = new TopK<>(limit, byField);
+          for (int i = 0; i < rows.size(); i++) {
+            top.offer(movies.get(rows.get(i)));
+          }
+          return top.toList();
+        }
+        for (int i = 0; i < rows.size(); i++) {
+          result.add(movies.get(rows.get(i)));
+        }
+        result.sort(byField);
+        return result;
+      }
+
+      for (int i = 0; i < rows.size() && result.size() < limit; i++) {
+        result.add(movies.get(rows.get(i)));
+      }
+      return result;
+    }
+
+    /**
+     * Group the matching positions, given in list order, by key in a sorted
+     * map holding the first position with the best value of each key.
+     */
+    private List<Movie> sparseGroups(IntList rows, MovieQuery.Field group,
+        MovieQuery.Field order, boolean descending, int limit) {
+      List<Movie> movies = QueryPlanner.this.movies;
+      TreeMap<Long, Integer> best = new TreeMap<>();
+      for (int i = 0; i < rows.size(); i++) {
+        Movie movie = movies.get(rows.get(i));
+        Integer row = best.putIfAbsent((long) group.get(movie), rows.get(i));
+        if (row != null && order != null) {
+          double value = order.get(movie);
+          double old = order.get(movies.get(row));
+          if (descending ? value > old : value < old) {
+            best.put((long) group.get(movie), rows.get(i));
+          }
+        }
+      }
+      List<Movie> result = new ArrayList<>();
+      for (int row : best.values()) {
+        if (result.size() == limit) {
+          break;
+        }
+        result.add(movies.get(row));
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder plan = new StringBuilder();
+      if (isScan()) {
+        plan.append("scan ").append(QueryPlanner.this.movies.size())
+            .append(" movies");
+      } else {
+        for (Access access : this.accesses) {
+          plan.append(plan.length() == 0 ? "index " : " and ")
+              .append(access.condition).append(" (").append(access.estimate)
+              .append(')');
+        }
+        plan.append(", about ").append(this.estimate).append(" candidates");
+      }
+      for (MovieQuery.Condition condition : this.residual) {
+        plan.append(", test ").append(condition);
+      }
+      return plan.toString();
+    }
+  }
+}
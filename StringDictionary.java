@@ -0,0 +1,61 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary assigning dense int ids to Strings, starting at 0 in order of
+ * first appearance.
+ */
+public class StringDictionary {
+
+  private final Map<String, Integer> ids = new HashMap<>();
+  private final List<String> values = new ArrayList<>();
+
+  /**
+   * 
+   * @param value
+   *          The String
+   * @return The id of 'value', which is added to the dictionary if necessary
+   */
+  public int add(String value) {
+    Integer id = this.ids.get(value);
+    if (id == null) {
+      id = this.values.size();
+      this.ids.put(value, id);
+      this.values.add(value);
+    }
+    return id;
+  }
+
+  /**
+   * 
+   * @param value
+   *          The String
+   * @return The id of 'value', or -1 if it is not in the dictionary
+   */
+  public int lookup(String value) {
+    Integer id = this.ids.get(value);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * 
+   * @param id
+   *          The id
+   * @return The String with the given id
+   */
+  public String get(int id) {
+    return this.values.get(id);
+  }
+
+  /**
+   * 
+   * @return The number of Strings in the dictionary
+   */
+  public int size() {
+    return this.values.size();
+  }
+}
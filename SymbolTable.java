@@ -0,0 +1,131 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe table interning Strings into dense int ids. The global table
+ * holds the names, genres and countries of all loaded movies, so every
+ * distinct value exists once on the heap and can be compared by id.
+ */
+public class SymbolTable {
+
+  private static final SymbolTable GLOBAL = new SymbolTable();
+
+  private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+  private volatile String[] values = new String[1024];
+  private volatile int size;
+
+  /**
+   * 
+   * @return The table shared by all movies
+   */
+  public static SymbolTable global() {
+    return GLOBAL;
+  }
+
+  /**
+   * 
+   * @param value
+   *          The String
+   * @return The id of 'value', which is added to the table if necessary
+   */
+  public int intern(String value) {
+    Integer id = this.ids.get(value);
+    if (id != null) {
+      return id;
+    }
+    synchronized (this) {
+      id = this.ids.get(value);
+      if (id == null) {
+        if (this.size == this.values.length) {
+          this.values = Arrays.copyOf(this.values, this.size * 2);
+        }
+        id = this.size;
+        this.values[id] = value;
+        this.size = id + 1;
+        this.ids.put(value, id);
+      }
+      return id;
+    }
+  }
+
+  /**
+   * Intern every String of 'values'. The list is only read.
+   *
+   * @param values
+   *          The Strings
+   * @return The ids of the Strings
+   */
+  public int[] intern(List<String> values) {
+    int[] result = new int[values.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = intern(values.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Intern every String of 'values' and replace it by the interned instance,
+   * so that equal Strings of different movies share one object. Only for
+   * lists the caller owns; 'values' must be modifiable.
+   *
+   * @param values
+   *          The Strings, replaced in place
+   * @return The ids of the Strings
+   */
+  public int[] internInPlace(List<String> values) {
+    int[] result = intern(values);
+    for (int i = 0; i < result.length; i++) {
+      values.set(i, get(result[i]));
+    }
+    return result;
+  }
+
+  /**
+   * 
+   * @param value
+   *          The String
+   * @return The id of 'value', or -1 if it is not in the table
+   */
+  public int lookup(String value) {
+    Integer id = this.ids.get(value);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * 
+   * @param id
+   *          The id
+   * @return The String with the given id
+   */
+  public String get(int id) {
+    return this.values[id];
+  }
+
+  /**
+   * 
+   * @return The number of Strings in the table
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * 
+   * @param ids
+   *          An array of ids
+   * @param id
+   *          The id to look for
+   * @return true if 'ids' contains 'id'
+   */
+  public static boolean contains(int[] ids, int id) {
+    for (int value : ids) {
+      if (value == id) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,246 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+import org.jsoup.select.QueryParser;
+
+/**
+ * Extracts the metadata of a movie from an IMDB title page in a single
+ * traversal of the DOM. The CSS selectors of all fields are compiled once.
+ * Each field has an optional scope (e.g. "table.cast_list" for the cast) and a
+ * target matched inside the scope, so that every element is visited once
+ * instead of once per field.
+ *
+ * The ":contains(...)" selectors for country, budget and gross, which scan the
+ * whole text of every "div.txt-block", are replaced by a check of the block's
+ * label, i.e. the text of its "h4" heading.
+ */
+public class TitlePageExtractor {
+
+	/**
+	 * How a field is taken from its matching elements.
+	 */
+	private enum Mode {
+		FIRST_TEXT,			// the text of the first match
+		ALL_TEXT,			// the texts of all matches
+		SECOND_TEXT_NODE	// the second text node of the first match, e.g. "$237,000,000" after "<h4>Budget:</h4>"
+	}
+
+	private static class Rule {
+		final String field;
+		final Evaluator scope;
+		final boolean firstScope;
+		final Evaluator target;
+		final Mode mode;
+
+		Rule(String field, Evaluator scope, boolean firstScope, Evaluator target, Mode mode) {
+			this.field = field;
+			this.scope = scope;
+			this.firstScope = firstScope;
+			this.target = target;
+			this.mode = mode;
+		}
+	}
+
+	/**
+	 * Matches the elements matched by 'base' whose label contains 'label'.
+	 */
+	private static class Labeled extends Evaluator {
+		private final Evaluator base;
+		private final String label;
+
+		Labeled(Evaluator base, String label) {
+			this.base = base;
+			this.label = label;
+		}
+
+		@Override
+		public boolean matches(Element root, Element element) {
+			return this.base.matches(root, element) && label(element).contains(this.label);
+		}
+
+		private static String label(Element element) {
+			for (Element child : element.children()) {
+				if (child.tagName().equals("h4")) {
+					return child.text();
+				}
+			}
+			return element.ownText();
+		}
+	}
+
+	private final List<Rule> rules = new ArrayList<>();
+	private final boolean timed;
+	private final AtomicLongArray nanos;
+	private final AtomicLong pages = new AtomicLong();
+
+	/**
+	 * @param timed
+	 *            whether to measure the time spent on each field
+	 */
+	public TitlePageExtractor(boolean timed) {
+		this.timed = timed;
+		rule("genreList", "div[itemprop='genre']", false, "a", Mode.ALL_TEXT);
+		rule("countryList", labeled("div.txt-block", "Country:"), false, css("a"), Mode.ALL_TEXT);
+		rule("description", null, false, "div.inline[itemprop=description]", Mode.FIRST_TEXT);
+		rule("budget", null, false, labeled("div.txt-block", "Budget:"), Mode.SECOND_TEXT_NODE);
+		rule("gross", null, false, labeled("div.txt-block", "Gross:"), Mode.SECOND_TEXT_NODE);
+		rule("ratingValue", ".ratingValue", false, "[itemprop=ratingValue]", Mode.FIRST_TEXT);
+		rule("ratingCount", null, false, "[itemprop=ratingCount]", Mode.FIRST_TEXT);
+		rule("duration", null, false, "time[itemprop=duration]", Mode.FIRST_TEXT);
+		rule("cast", "table.cast_list", true, "[itemprop=name]", Mode.ALL_TEXT);
+		rule("characters", "table.cast_list", true, ".character", Mode.ALL_TEXT);
+		rule("directors", "div.credit_summary_item", true, "[itemprop=name]", Mode.ALL_TEXT);
+		this.nanos = new AtomicLongArray(this.rules.size());
+	}
+
+	private void rule(String field, String scope, boolean firstScope, String target, Mode mode) {
+		rule(field, scope == null ? null : css(scope), firstScope, css(target), mode);
+	}
+
+	private void rule(String field, Evaluator scope, boolean firstScope, Evaluator target, Mode mode) {
+		this.rules.add(new Rule(field, scope, firstScope, target, mode));
+	}
+
+	private static Evaluator css(String query) {
+		return QueryParser.parse(query);
+	}
+
+	private static Evaluator labeled(String query, String label) {
+		return new Labeled(css(query), label);
+	}
+
+	/**
+	 * Extract the metadata of a movie.
+	 *
+	 * @param movieSite
+	 *            the title page
+	 * @param url
+	 *            the URL of the title page
+	 * @return the movie as JSON array
+	 */
+	public JsonArray extract(Document movieSite, String url) {
+		int n = this.rules.size();
+		List<List<String>> values = new ArrayList<>(n);
+		int[] scopeDepth = new int[n];
+		boolean[] scopeSeen = new boolean[n];
+		boolean[] done = new boolean[n];
+		long[] spent = new long[n];
+		for (int r = 0; r < n; r++) {
+			values.add(new ArrayList<>());
+			scopeDepth[r] = -1;
+		}
+
+		NodeTraversor.traverse(new NodeVisitor() {
+			@Override
+			public void head(Node node, int depth) {
+				if (!(node instanceof Element)) {
+					return;
+				}
+				Element element = (Element) node;
+				for (int r = 0; r < n; r++) {
+					if (done[r]) {
+						continue;
+					}
+					long start = TitlePageExtractor.this.timed ? System.nanoTime() : 0;
+					Rule rule = TitlePageExtractor.this.rules.get(r);
+					if (rule.scope != null && scopeDepth[r] < 0) {
+						if (!(rule.firstScope && scopeSeen[r]) && rule.scope.matches(movieSite, element)) {
+							scopeDepth[r] = depth;
+							scopeSeen[r] = true;
+						}
+					} else if (rule.target.matches(movieSite, element)) {
+						String value = value(rule.mode, element);
+						if (value != null) {
+							values.get(r).add(value);
+							done[r] = rule.mode != Mode.ALL_TEXT;
+						}
+					}
+					if (TitlePageExtractor.this.timed) {
+						spent[r] += System.nanoTime() - start;
+					}
+				}
+			}
+
+			@Override
+			public void tail(Node node, int depth) {
+				for (int r = 0; r < n; r++) {
+					if (scopeDepth[r] == depth) {
+						scopeDepth[r] = -1;
+						done[r] |= TitlePageExtractor.this.rules.get(r).firstScope;
+					}
+				}
+			}
+		}, movieSite);
+
+		JsonObjectBuilder movieOB = Json.createObjectBuilder();
+		movieOB.add("url", url);
+
+		// TITLE, YEAR
+		String _title = "";
+		String _year = "";
+		String fullTitle = movieSite.title();
+		if (fullTitle.length() >= 14) {
+			_title = fullTitle.substring(0, fullTitle.length() - 14);
+			_year = fullTitle.substring(fullTitle.length() - 12, fullTitle.length() - 8);
+		}
+		movieOB.add("title", _title);
+		movieOB.add("year", _year);
+
+		for (int r = 0; r < n; r++) {
+			Rule rule = this.rules.get(r);
+			if (rule.mode == Mode.ALL_TEXT) {
+				JsonArrayBuilder list = Json.createArrayBuilder();
+				for (String value : values.get(r)) {
+					list.add(value);
+				}
+				movieOB.add(rule.field, list.build());
+			} else {
+				movieOB.add(rule.field, values.get(r).isEmpty() ? "" : values.get(r).get(0));
+			}
+			if (this.timed) {
+				this.nanos.addAndGet(r, spent[r]);
+			}
+		}
+		this.pages.incrementAndGet();
+
+		return Json.createArrayBuilder().add(movieOB).build();
+	}
+
+	private static String value(Mode mode, Element element) {
+		switch (mode) {
+		case SECOND_TEXT_NODE:
+			List<TextNode> texts = element.textNodes();
+			return texts.size() > 1 ? texts.get(1).toString().trim() : null;
+		default:
+			return element.text().trim();
+		}
+	}
+
+	/**
+	 * @return the time spent on each field so far, if timing is enabled
+	 */
+	public String timingReport() {
+		StringBuilder report = new StringBuilder();
+		long count = Math.max(1, this.pages.get());
+		report.append("Extracted pages: ").append(this.pages.get()).append('\n');
+		for (int r = 0; r < this.rules.size(); r++) {
+			report.append(String.format("\t%-12s %8.1f ms total %8.1f us/page%n", this.rules.get(r).field,
+					this.nanos.get(r) / 1e6, this.nanos.get(r) / 1e3 / count));
+		}
+		return report.toString();
+	}
+}
@@ -0,0 +1,160 @@
+//package ue_inforet_imdb_spider_study;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Selects the 'k' best of a stream of values with a bounded heap, in O(n log k)
+ * time and O(k) memory. Values that compare equal are ranked in the order in
+ * which they were offered.
+ *
+ * @param <T>
+ *          The type of the values
+ */
+public class TopK<T> {
+
+  private final int k;
+  private final Comparator<? super T> order;
+  private final Object[] heap;
+  private final long[] sequence;
+  private int size;
+  private long offered;
+
+  /**
+   * 
+   * @param k
+   *          The number of values to keep
+   * @param order
+   *          The ranking, best values first
+   */
+  public TopK(int k, Comparator<? super T> order) {
+    this.k = k;
+    this.order = order;
+    this.heap = new Object[k];
+    this.sequence = new long[k];
+  }
+
+  /**
+   * 
+   * @param value
+   *          The value
+   * @return true if 'value' is currently among the 'k' best values
+   */
+  public boolean offer(T value) {
+    long seq = this.offered++;
+    if (this.size < this.k) {
+      this.heap[this.size] = value;
+      this.sequence[this.size] = seq;
+      siftUp(this.size++);
+      return true;
+    }
+    if (this.k == 0 || !worse(this.heap[0], this.sequence[0], value, seq)) {
+      return false;
+    }
+    this.heap[0] = value;
+    this.sequence[0] = seq;
+    siftDown(0);
+    return true;
+  }
+
+  /**
+   * Offer all values of another selection, ranked after the values of this
+   * selection in case of ties. Merging the selections of consecutive
+   * partitions in order gives the same result as a single selection.
+   *
+   * @param other
+   *          Another selection with the same ranking
+   */
+  public void addAll(TopK<? extends T> other) {
+    for (T value : other.toList()) {
+      offer(value);
+    }
+  }
+
+  /**
+   * 
+   * @return The number of selected values
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * 
+   * @return The lowest-ranked selected value, which the next value has to beat
+   *         once 'k' values are selected, or null if none is selected
+   */
+  @SuppressWarnings("unchecked")
+  public T worst() {
+    return this.size == 0 ? null : (T) this.heap[0];
+  }
+
+  /**
+   * 
+   * @return The selected values, best first
+   */
+  @SuppressWarnings("unchecked")
+  public List<T> toList() {
+    Integer[] slots = new Integer[this.size];
+    for (int i = 0; i < this.size; i++) {
+      slots[i] = i;
+    }
+    Arrays.sort(slots, (a, b) -> a.intValue() == b.intValue() ? 0
+        : worse(this.heap[a], this.sequence[a],
+        this.heap[b], this.sequence[b]) ? 1 : -1);
+    List<T> result = new ArrayList<>(this.size);
+    for (int slot : slots) {
+      result.add((T) this.heap[slot]);
+    }
+    return result;
+  }
+
+  /**
+   * @return true if value 'a' offered at 'seqA' ranks after value 'b' offered
+   *         at 'seqB'
+   */
+  @SuppressWarnings("unchecked")
+  private boolean worse(Object a, long seqA, Object b, long seqB) {
+    int c = this.order.compare((T) a, (T) b);
+    return c > 0 || (c == 0 && seqA > seqB);
+  }
+
+  private void siftUp(int i) {
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (!worse(this.heap[i], this.sequence[i], this.heap[parent], this.sequence[parent])) {
+        return;
+      }
+      swap(i, parent);
+      i = parent;
+    }
+  }
+
+  private void siftDown(int i) {
+    while (true) {
+      int worst = i;
+      for (int child = 2 * i + 1; child <= 2 * i + 2 && child < this.size; child++) {
+        if (worse(this.heap[child], this.sequence[child], this.heap[worst],
+            this.sequence[worst])) {
+          worst = child;
+        }
+      }
+      if (worst == i) {
+        return;
+      }
+      swap(i, worst);
+      i = worst;
+    }
+  }
+
+  private void swap(int i, int j) {
+    Object value = this.heap[i];
+    this.heap[i] = this.heap[j];
+    this.heap[j] = value;
+    long seq = this.sequence[i];
+    this.sequence[i] = this.sequence[j];
+    this.sequence[j] = seq;
+  }
+}